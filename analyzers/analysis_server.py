@@ -0,0 +1,339 @@
+"""
+Analysis Server
+JSON-RPC 2.0 access to one warm analysis of a folder, for editors and CI bots.
+Transports:
+  - stdio: one JSON request per line in, one JSON response per line out
+  - HTTP:  POST / with a JSON request (or batch) body
+Methods: parse_file, find_symbol, call_chain, dead_code, duplicates, audit_symbol.
+
+All analysis state (source cache, symbol table, call graph) is guarded by one
+re-entrant lock. A poller thread checks the tree for changes every
+`poll_interval` seconds and applies them under the lock. Requests are served
+concurrently: each reads what it needs under the lock and only then awaits the
+LLM. Coroutines run on a single event loop thread shared by all requests.
+"""
+
+import asyncio
+import contextlib
+import inspect
+import json
+import sys
+import threading
+from concurrent.futures import ThreadPoolExecutor
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+from pathlib import Path
+from typing import Any, Callable, Dict, List, Optional
+
+from core.scanner import FileScanner
+from core.source_cache import SourceCache
+from core.parsed_unit import UnitParser, LANG_BY_EXT
+from core.parse_cache import ParseCache
+from core.symbol_table import Symbol, SymbolType
+from core.reachability import EntryPointPolicy
+from core.watcher import TreeWatcher
+from analyzers.structural_analyzer import StructuralAnalyzer
+from analyzers.cross_file_redundancy import CrossFileRedundancyDetector
+from analyzers.llm_bug_detector import LLMBugDetector
+
+# JSON-RPC 2.0 error codes
+PARSE_ERROR = -32700
+INVALID_REQUEST = -32600
+METHOD_NOT_FOUND = -32601
+INVALID_PARAMS = -32602
+INTERNAL_ERROR = -32603
+
+class RPCError(Exception):
+    def __init__(self, code: int, message: str):
+        super().__init__(message)
+        self.code = code
+        self.message = message
+
+def _symbol_json(symbol: Symbol) -> Dict[str, Any]:
+    return {
+        "qualified_name": symbol.qualified_name,
+        "name": symbol.name,
+        "type": symbol.type.value,
+        "file": str(symbol.file),
+        "line": symbol.line,
+        "signature": symbol.signature,
+        "parent": symbol.parent_name or None,
+    }
+
+class AnalysisService:
+    """Warm analysis state for one folder, plus the RPC methods that read it."""
+
+    def __init__(self, folder: Path, llm_client=None, use_cache: bool = True, jobs: int = 1,
+                 java_dispatch: str = "rta", entry_policy: EntryPointPolicy = None, poll_interval: float = 0.5):
+        self.folder = Path(folder).resolve()
+        self.llm_client = llm_client
+        self.lock = threading.RLock()
+        self.poll_interval = poll_interval
+        self._stopped = threading.Event()
+        self._poller: Optional[threading.Thread] = None
+        self.source_cache = SourceCache()
+        self.unit_parser = UnitParser(self.source_cache)
+        self.parse_cache = ParseCache(self.folder) if use_cache else None
+        self.analyzer = StructuralAnalyzer(source_cache=self.source_cache, unit_parser=self.unit_parser,
+                                           parse_cache=self.parse_cache, jobs=jobs,
+                                           include_dirs=[self.folder, self.folder / "include"],
+                                           java_dispatch=java_dispatch, entry_policy=entry_policy)
+        self.watcher = TreeWatcher(FileScanner(self.folder))
+        self.results: Dict[str, Any] = {}
+        # One event loop for every coroutine (the LLM client binds to the loop it first runs on)
+        self.loop = asyncio.new_event_loop()
+        self._loop_thread = threading.Thread(target=self.loop.run_forever, name="analysis-loop", daemon=True)
+        self._loop_thread.start()
+        self.methods: Dict[str, Callable[..., Any]] = {
+            "parse_file": self.parse_file,
+            "find_symbol": self.find_symbol,
+            "call_chain": self.call_chain,
+            "dead_code": self.dead_code,
+            "duplicates": self.duplicates,
+            "audit_symbol": self.audit_symbol,
+        }
+
+    def load(self):
+        """Analyze the folder, then start polling it for changes."""
+        with self.lock:
+            files = self.watcher.start()
+            valid = [f for f, is_valid, _ in self.analyzer.check_syntax(files) if is_valid]
+            self.results = self.analyzer.analyze_codebase(valid)
+        self._poller = threading.Thread(target=self._poll_loop, name="analysis-poller", daemon=True)
+        self._poller.start()
+
+    def close(self):
+        self._stopped.set()
+        if self._poller is not None:
+            self._poller.join(timeout=5)
+        self.loop.call_soon_threadsafe(self.loop.stop)
+        self._loop_thread.join(timeout=5)
+        self.analyzer.close()
+        if self.parse_cache:
+            self.parse_cache.close()
+
+    def _poll_loop(self):
+        while not self._stopped.wait(self.poll_interval):
+            try:
+                self._sync()
+            except Exception as e:
+                print(f"Error applying file changes: {e}")
+
+    def _sync(self):
+        """Apply file changes made since the last poll (a cheap stat walk when nothing changed)."""
+        # Only the poller thread touches the watcher, so the stat walk needs no lock
+        changed, removed = self.watcher.poll()
+        if not changed and not removed:
+            return
+        with self.lock:
+            for file_path in changed:
+                self.source_cache.invalidate(file_path)
+            checked = list(self.analyzer.check_syntax(changed))
+            valid = [f for f, is_valid, _ in checked if is_valid]
+            invalid = [f for f, is_valid, _ in checked if not is_valid]
+            self.results = self.analyzer.update_files(valid, removed + invalid)
+
+    def _run(self, coro):
+        return asyncio.run_coroutine_threadsafe(coro, self.loop).result()
+
+    def _path(self, file: str) -> Path:
+        path = Path(file)
+        return path if path.is_absolute() else self.folder / path
+
+    def _lookup(self, name: str) -> List[Symbol]:
+        """Symbols by qualified name, FQN without overload suffix, or simple name."""
+        table = self.analyzer.symbol_table
+        symbol = table.get_symbol(name)
+        if symbol is not None:
+            return [symbol]
+        return table.find_symbols_by_fqn(name) or table.find_symbols_by_name(name)
+
+    # ── RPC methods ────────────────────────────────────────────────
+
+    def parse_file(self, file: str) -> Dict[str, Any]:
+        """Structural parse of one file (re-parsed if it changed on disk)."""
+        path = self._path(file)
+        if not path.is_file():
+            raise RPCError(INVALID_PARAMS, f"No such file: {file}")
+        if path.suffix.lower() not in LANG_BY_EXT:
+            raise RPCError(INVALID_PARAMS, f"Unsupported file type: {file}")
+        with self.lock:
+            _, is_valid, errors = next(self.analyzer.check_syntax([path], keep_structure=False))
+            data = self.analyzer.file_data_map.get(str(path))
+            if data is None:
+                data = self.analyzer.parser.parse_unit(self.unit_parser.parse_file(path))
+            return {
+                "file": str(path),
+                "valid": is_valid,
+                "syntax_errors": [{"line": e.line, "column": e.column, "message": e.message, "parser": e.parser}
+                                  for e in errors],
+                "structure": data,
+            }
+
+    def find_symbol(self, name: str) -> List[Dict[str, Any]]:
+        with self.lock:
+            return [_symbol_json(s) for s in self._lookup(name)]
+
+    def call_chain(self, source: str, target: str) -> List[str]:
+        """Shortest call chain between two functions (qualified names)."""
+        with self.lock:
+            ends = []
+            for name in (source, target):
+                found = [s for s in self._lookup(name) if s.type == SymbolType.FUNCTION]
+                if not found:
+                    raise RPCError(INVALID_PARAMS, f"Unknown function: {name}")
+                ends.append(found[0].qualified_name)
+            return self.analyzer.call_graph.get_call_chain(*ends)
+
+    def dead_code(self) -> List[Dict[str, Any]]:
+        with self.lock:
+            return [_symbol_json(s) for s in self.results.get("dead_code", [])]
+
+    def duplicates(self) -> List[Dict[str, Any]]:
+        """Duplicate function pairs (LLM-verified when an LLM client is configured)."""
+        # Candidate pairs and their bodies are read under the lock
+        with self.lock:
+            detector = CrossFileRedundancyDetector(self.analyzer.symbol_table, self.llm_client,
+                                                   source_cache=self.source_cache, unit_parser=self.unit_parser)
+            pairs, candidates = detector.collect_candidates()
+
+        # Outside the lock: other requests proceed while the model verifies the candidates
+        pairs.extend(self._run(detector.verify_candidates(candidates)))
+        return [{
+            "functions": [_symbol_json(f) for f in dup.functions],
+            "similarity": dup.similarity,
+            "reason": dup.reason,
+            "suggestion": getattr(dup, "suggestion", ""),
+        } for dup in pairs]
+
+    def audit_symbol(self, name: str) -> Dict[str, Any]:
+        """LLM bug audit of one function, with the same context the interactive audit uses."""
+        if self.llm_client is None:
+            raise RPCError(INTERNAL_ERROR, "No LLM client configured")
+        with self.lock:
+            found = [s for s in self._lookup(name) if s.type == SymbolType.FUNCTION]
+            if not found:
+                raise RPCError(INVALID_PARAMS, f"Unknown function: {name}")
+            symbol = found[0]
+            parse_result = self.analyzer.file_data_map.get(str(symbol.file), {})
+            func = next((f for f in parse_result.get("functions", [])
+                         if f["name"] == symbol.name and f["line"] == symbol.line), None)
+            if func is None:
+                raise RPCError(INVALID_PARAMS, f"No parse record for {name}")
+            body = self.source_cache.get(symbol.file).slice(*func["span"])
+            imports_str, global_vars_str = LLMBugDetector.file_context(parse_result)
+            class_ctx, dep_hints = LLMBugDetector.symbol_context(parse_result, func, body)
+            language = LANG_BY_EXT.get(symbol.file.suffix.lower(), "python")
+
+        # Outside the lock: other requests proceed while the model works
+        bugs, corrected_code = self._run(LLMBugDetector(self.llm_client).analyze_symbol(
+            symbol.name, body, language, symbol.file,
+            class_context=class_ctx, dependency_hints=dep_hints,
+            global_vars=global_vars_str, imports_list=imports_str
+        ))
+        return {
+            "symbol": _symbol_json(symbol),
+            "bugs": [{"type": b.type, "severity": b.severity, "line": b.line,
+                      "description": b.description, "suggestion": b.suggestion} for b in bugs],
+            "corrected_code": corrected_code,
+        }
+
+    # ── JSON-RPC dispatch ──────────────────────────────────────────
+
+    def handle(self, payload: str) -> Optional[str]:
+        """One request or batch in, serialized response out (None for notifications only)."""
+        try:
+            message = json.loads(payload)
+        except ValueError as e:
+            return json.dumps(_error(None, PARSE_ERROR, f"Parse error: {e}"))
+        if isinstance(message, list):
+            if not message:
+                return json.dumps(_error(None, INVALID_REQUEST, "Empty batch"))
+            responses = [r for r in map(self._dispatch, message) if r is not None]
+            return json.dumps(responses) if responses else None
+        response = self._dispatch(message)
+        return json.dumps(response) if response is not None else None
+
+    def _dispatch(self, request: Any) -> Optional[Dict[str, Any]]:
+        if (not isinstance(request, dict) or request.get("jsonrpc") != "2.0"
+                or not isinstance(request.get("method"), str)):
+            return _error(request.get("id") if isinstance(request, dict) else None,
+                          INVALID_REQUEST, "Invalid request")
+        request_id = request.get("id")
+        is_notification = "id" not in request
+        method = self.methods.get(request["method"])
+        if method is None:
+            response = _error(request_id, METHOD_NOT_FOUND, f"Method not found: {request['method']}")
+        else:
+            params = request.get("params", {})
+            try:
+                if isinstance(params, list):
+                    args, kwargs = params, {}
+                elif isinstance(params, dict):
+                    args, kwargs = (), params
+                else:
+                    raise RPCError(INVALID_PARAMS, "params must be an array or object")
+                try:
+                    inspect.signature(method).bind(*args, **kwargs)
+                except TypeError as e:
+                    raise RPCError(INVALID_PARAMS, str(e))
+                response = {"jsonrpc": "2.0", "id": request_id, "result": method(*args, **kwargs)}
+            except RPCError as e:
+                response = _error(request_id, e.code, e.message)
+            except Exception as e:
+                response = _error(request_id, INTERNAL_ERROR, f"{type(e).__name__}: {e}")
+        return None if is_notification else response
+
+def _error(request_id: Any, code: int, message: str) -> Dict[str, Any]:
+    return {"jsonrpc": "2.0", "id": request_id, "error": {"code": code, "message": message}}
+
+# ── Transports ─────────────────────────────────────────────────────
+
+def serve_stdio(service: AnalysisService, out=None, workers: int = 8):
+    """
+    Line-delimited JSON-RPC on stdin and `out` (default: stdout). Requests are
+    handled concurrently, so responses may arrive out of order (match them by
+    id). While serving, anything the analyzers print goes to stderr so `out`
+    carries only responses; stdout is restored on return.
+    """
+    out = out or sys.stdout
+    write_lock = threading.Lock()
+
+    def respond(line: str):
+        response = service.handle(line)
+        if response is not None:
+            with write_lock:
+                out.write(response + "\n")
+                out.flush()
+
+    with contextlib.redirect_stdout(sys.stderr), \
+            ThreadPoolExecutor(max_workers=workers, thread_name_prefix="rpc") as pool:
+        for line in sys.stdin:
+            if line.strip():
+                pool.submit(respond, line)
+
+def serve_http(service: AnalysisService, host: str = "127.0.0.1", port: int = 8765):
+    """JSON-RPC over HTTP POST; one thread per connection."""
+
+    class Handler(BaseHTTPRequestHandler):
+        def do_POST(self):
+            length = int(self.headers.get("Content-Length") or 0)
+            response = service.handle(self.rfile.read(length).decode("utf-8", errors="replace"))
+            body = (response or "").encode("utf-8")
+            self.send_response(200 if response is not None else 204)
+            self.send_header("Content-Type", "application/json")
+            self.send_header("Content-Length", str(len(body)))
+            self.end_headers()
+            self.wfile.write(body)
+
+        def do_GET(self):
+            self.send_error(405, "Use POST with a JSON-RPC request")
+
+        def log_message(self, format, *args):
+            pass  # Keep the console for analysis output
+
+    server = ThreadingHTTPServer((host, port), Handler)
+    server.daemon_threads = True
+    try:
+        server.serve_forever()
+    finally:
+        server.server_close()
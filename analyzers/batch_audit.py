@@ -0,0 +1,138 @@
+"""
+Batch Audit
+Non-interactive semantic audit for `analyze --batch`. The audit units are the
+ones the interactive flow walks (global variables, top-level code, functions,
+method-less classes), built with the same prompt context, but they are all
+submitted at once and an asyncio.Semaphore caps how many LLM requests are in
+flight. The LLM server can then batch requests continuously instead of
+serving one round trip at a time.
+"""
+
+import asyncio
+import time
+from pathlib import Path
+from typing import Any, Callable, Dict, Iterable, List, Optional
+from analyzers.llm_bug_detector import LLMBugDetector
+
+REPORTED_SEVERITIES = ('critical', 'high', 'medium', 'low')
+
+class AuditJob:
+    """One LLM audit: a symbol (or file-level unit) plus its prompt context."""
+
+    __slots__ = ("file", "kind", "name", "line", "code", "language", "context")
+
+    def __init__(self, file: Path, kind: str, name: str, line: int, code: str, language: str,
+                 context: Dict[str, str] = None):
+        self.file = file
+        self.kind = kind  # globals | top_level | function | class
+        self.name = name
+        self.line = line
+        self.code = code
+        self.language = language
+        self.context = context or {}
+
+class BatchAuditor:
+    """Plans audit jobs from structural parse results and runs them with bounded concurrency."""
+
+    def __init__(self, bug_detector: LLMBugDetector, max_in_flight: int = 16):
+        self.bug_detector = bug_detector
+        self.max_in_flight = max(1, max_in_flight)
+        self.stats: Dict[str, Any] = {}
+
+    @staticmethod
+    def plan(file_path: Path, parse_result: dict, source, language: str, file_level: bool = True,
+             function_lines: Optional[Iterable[int]] = None,
+             class_names: Optional[Iterable[str]] = None) -> List[AuditJob]:
+        """
+        Audit jobs for one file. `function_lines` / `class_names` restrict the
+        function and class audits (None = all); `file_level` controls the
+        globals and top-level code audits.
+        """
+        jobs = []
+        imports_str, global_vars_str = LLMBugDetector.file_context(parse_result)
+        if file_level and global_vars_str:
+            jobs.append(AuditJob(file_path, "globals", "Global Variables", 0, global_vars_str, language,
+                                 {"imports_list": imports_str}))
+        if file_level and parse_result.get("calls"):
+            jobs.append(AuditJob(file_path, "top_level", "Global Code", 0, source.text, language))
+
+        lines = set(function_lines) if function_lines is not None else None
+        for func in parse_result.get("functions", []):
+            if lines is not None and func["line"] not in lines:
+                continue
+            body = source.slice(*func["span"])
+            class_ctx, dep_hints = LLMBugDetector.symbol_context(parse_result, func, body)
+            jobs.append(AuditJob(file_path, "function", func["name"], func["line"], body, language, {
+                "class_context": class_ctx, "dependency_hints": dep_hints,
+                "global_vars": global_vars_str, "imports_list": imports_str,
+            }))
+
+        names = set(class_names) if class_names is not None else None
+        for cls in parse_result.get("classes", []):
+            # Classes with methods are covered by their methods' audits
+            if cls["methods"] or (names is not None and cls["name"] not in names):
+                continue
+            bases_str = f"Inherits from: {', '.join(cls['bases'])}\n" if cls.get("bases") else ""
+            jobs.append(AuditJob(file_path, "class", cls["name"], cls["line"], source.slice(*cls["span"]),
+                                 language, {"dependency_hints": bases_str, "global_vars": global_vars_str,
+                                            "imports_list": imports_str}))
+        return jobs
+
+    async def run(self, jobs: List[AuditJob],
+                  on_result: Callable[[int, int], None] = None) -> List[Dict[str, Any]]:
+        """
+        Audit every job, at most `max_in_flight` at a time. Returns one finding
+        per job with reportable bugs, in job order. `on_result(done, total)` is
+        called as each audit completes.
+        """
+        semaphore = asyncio.Semaphore(self.max_in_flight)
+        done = 0
+        in_flight = peak = 0
+        failed_before = len(self.bug_detector.failed)
+
+        async def audit(job: AuditJob):
+            nonlocal done, in_flight, peak
+            async with semaphore:
+                in_flight += 1
+                peak = max(peak, in_flight)
+                try:
+                    if job.kind == "top_level":
+                        result = await self.bug_detector.analyze_code(job.file, job.code, job.language)
+                    else:
+                        result = await self.bug_detector.analyze_symbol(job.name, job.code, job.language,
+                                                                        job.file, **job.context)
+                finally:
+                    in_flight -= 1
+            done += 1
+            if on_result:
+                on_result(done, len(jobs))
+            return result
+
+        started = time.perf_counter()
+        results = await asyncio.gather(*(audit(job) for job in jobs))
+        elapsed = time.perf_counter() - started
+
+        findings = []
+        for job, (bugs, corrected_code) in zip(jobs, results):
+            bugs = [b for b in bugs if b.severity.lower() in REPORTED_SEVERITIES]
+            if not bugs:
+                continue
+            findings.append({
+                "file": str(job.file),
+                "kind": job.kind,
+                "symbol": job.name,
+                "line": job.line,
+                "bugs": [{"type": b.type, "severity": b.severity, "line": b.line,
+                          "description": b.description, "suggestion": b.suggestion} for b in bugs],
+                "corrected_code": corrected_code,
+            })
+        self.stats = {
+            "audits": len(jobs),
+            "failed": len(self.bug_detector.failed) - failed_before,
+            "with_bugs": len(findings),
+            "max_in_flight": self.max_in_flight,
+            "peak_in_flight": peak,
+            "seconds": round(elapsed, 3),
+            "audits_per_second": round(len(jobs) / elapsed, 2) if elapsed > 0 else 0.0,
+        }
+        return findings
@@ -1,10 +1,13 @@
 import ast
+import copy
 import re
 import json
 import difflib
-from typing import List, Dict
+from typing import List, Dict, Tuple
 from pathlib import Path
 from core.symbol_table import Symbol, SymbolType
+from core.source_cache import SourceCache
+from core.parsed_unit import UnitParser
 
 
 class DuplicateFunction:
@@ -15,6 +18,16 @@ class DuplicateFunction:
         self.suggestion = ""
 
 
+class DuplicateCandidate:
+    """A structurally similar pair, with the bodies it is verified on."""
+    def __init__(self, func1: Symbol, func2: Symbol, similarity: float, body1: str, body2: str):
+        self.func1 = func1
+        self.func2 = func2
+        self.similarity = similarity
+        self.body1 = body1
+        self.body2 = body2
+
+
 class CrossFileRedundancyDetector:
     """
     Detects semantic duplicates: functions with same LOGIC but different NAMES/VARIABLES.
@@ -36,22 +49,39 @@ class CrossFileRedundancyDetector:
     AST_SIMILARITY_THRESHOLD = 0.30  # structural similarity cutoff for LLM pass
     AUTO_CONFIRM_THRESHOLD = 0.95    # above this → auto-confirm without LLM (near-exact structure only)
 
-    def __init__(self, symbol_table, llm_client=None):
+    def __init__(self, symbol_table, llm_client=None, source_cache: SourceCache = None, unit_parser: UnitParser = None):
         self.symbol_table = symbol_table
         self.llm_client = llm_client
+        self.source_cache = source_cache or SourceCache()
+        self.unit_parser = unit_parser or UnitParser(self.source_cache)
+        self._def_nodes: Dict[Path, Dict[tuple, ast.AST]] = {}
 
     # ── Main entry point ─────────────────────────────────────────────
     async def detect_duplicates(self, console=None) -> List[DuplicateFunction]:
+        duplicates, candidates = self.collect_candidates(console)
+        duplicates.extend(await self.verify_candidates(candidates, console))
+        return duplicates
+
+    def collect_candidates(self, console=None) -> Tuple[List[DuplicateFunction], List[DuplicateCandidate]]:
+        """
+        Steps 0-3, the ones that read the symbol table and source files: exact
+        duplicate definitions, and structurally similar pairs with their bodies
+        copied, so verify_candidates() does not touch the table.
+        """
         duplicates = []
+        candidates = []
 
         # ── Step 0: exact duplicate definitions (same name, same scope) ──
-        seen_files = {sym.file for sym in self.symbol_table.symbols.values()}
+        seen_files = self.symbol_table.get_files()
 
         for file_path in seen_files:
+            if file_path.suffix != '.py':
+                continue
             try:
-                source = file_path.read_text(encoding='utf-8')
-                tree = ast.parse(source)
-                exact_dups = self._find_duplicate_defs(tree, file_path, source)
+                unit = self.unit_parser.parse_file(file_path)
+                if unit.module is None:
+                    continue
+                exact_dups = self._find_duplicate_defs(unit.module, file_path, unit.code)
                 if exact_dups:
                     duplicates.extend(exact_dups)
                     if console:
@@ -65,13 +95,15 @@ class CrossFileRedundancyDetector:
                 pass
 
         # ── Step 1: collect candidate functions ──────────────────────
-        functions = [
-            s for s in self.symbol_table.symbols.values()
-            if s.type == SymbolType.FUNCTION
-            and s.body_code
-            and len(s.body_code.strip().splitlines()) >= self.MIN_BODY_LINES
-            and s.name not in self.SKIP_METHODS
-        ]
+        functions = []
+        bodies: Dict[str, str] = {}  # read once; candidates keep these copies
+        for s in self.symbol_table.get_symbols_by_type(SymbolType.FUNCTION):
+            if s.name in self.SKIP_METHODS:
+                continue
+            body = s.body_code
+            if body and len(body.strip().splitlines()) >= self.MIN_BODY_LINES:
+                functions.append(s)
+                bodies[s.qualified_name] = body
 
         if console:
             console.print(
@@ -83,7 +115,11 @@ class CrossFileRedundancyDetector:
         fingerprints: Dict[str, str] = {}
         for func in functions:
             try:
-                fp = self._fingerprint(func.body_code, func.file.suffix)
+                node = self._def_node(func) if func.file.suffix == '.py' else None
+                if node is not None:
+                    fp = self._python_fingerprint_node(node)
+                else:
+                    fp = self._fingerprint(bodies[func.qualified_name], func.file.suffix)
                 fingerprints[func.qualified_name] = fp
             except Exception:
                 fingerprints[func.qualified_name] = ""
@@ -126,50 +162,62 @@ class CrossFileRedundancyDetector:
                 if sim < self.AST_SIMILARITY_THRESHOLD:
                     continue
 
-                # ── Step 4: LLM verification ─────────────────────────
-                scope = "same-file" if func1.file == func2.file else "cross-file"
-                if console:
-                    console.print(
-                        f"  [cyan]🔍 Candidate ({scope}): "
-                        f"{func1.name} ({func1.file.name}:{func1.line}) ↔ "
-                        f"{func2.name} ({func2.file.name}:{func2.line}) "
-                        f"(structural {sim:.0%})[/cyan]"
-                    )
+                candidates.append(DuplicateCandidate(func1, func2, sim, bodies[func1.qualified_name],
+                                                     bodies[func2.qualified_name]))
 
-                is_dup = False
-                reason = f"Structurally similar ({sim:.0%})"
-                suggestion = ""
-
-                if sim >= self.AUTO_CONFIRM_THRESHOLD:
-                    # Very high structural match → auto-confirm
-                    is_dup = True
-                    reason = (f"Near-identical code structure ({sim:.0%} AST match). "
-                              f"Both functions have the same control flow, operations, "
-                              f"and return pattern — only variable names differ.")
-                    suggestion = "Keep one function and remove the other"
-                elif self.llm_client:
-                    result = await self._llm_verify(func1, func2)
-                    is_dup = result.get("are_duplicates", False)
-                    if is_dup:
-                        reason = result.get("shared_logic_summary", "Same logic")
-                        suggestion = result.get("optimization_suggestion", "")
-                else:
-                    # no LLM → trust structural similarity alone
-                    is_dup = True
+        return duplicates, candidates
 
+    async def verify_candidates(self, candidates: List[DuplicateCandidate],
+                                console=None) -> List[DuplicateFunction]:
+        """Step 4: confirm candidate pairs, by structure alone or with the LLM."""
+        duplicates = []
+        for candidate in candidates:
+            func1, func2, sim = candidate.func1, candidate.func2, candidate.similarity
+
+            # ── Step 4: LLM verification ─────────────────────────
+            scope = "same-file" if func1.file == func2.file else "cross-file"
+            if console:
+                console.print(
+                    f"  [cyan]🔍 Candidate ({scope}): "
+                    f"{func1.name} ({func1.file.name}:{func1.line}) ↔ "
+                    f"{func2.name} ({func2.file.name}:{func2.line}) "
+                    f"(structural {sim:.0%})[/cyan]"
+                )
+
+            is_dup = False
+            reason = f"Structurally similar ({sim:.0%})"
+            suggestion = ""
+
+            if sim >= self.AUTO_CONFIRM_THRESHOLD:
+                # Very high structural match → auto-confirm
+                is_dup = True
+                reason = (f"Near-identical code structure ({sim:.0%} AST match). "
+                          f"Both functions have the same control flow, operations, "
+                          f"and return pattern — only variable names differ.")
+                suggestion = "Keep one function and remove the other"
+            elif self.llm_client:
+                result = await self._llm_verify(candidate)
+                is_dup = result.get("are_duplicates", False)
                 if is_dup:
-                    dup = DuplicateFunction(
-                        functions=[func1, func2],
-                        similarity=sim,
-                        reason=reason,
-                    )
-                    dup.suggestion = suggestion
-                    duplicates.append(dup)
-                    if console:
-                        console.print("    [red]⚠ Confirmed duplicate![/red]")
-                else:
-                    if console:
-                        console.print("    [green]✓ Not a duplicate[/green]")
+                    reason = result.get("shared_logic_summary", "Same logic")
+                    suggestion = result.get("optimization_suggestion", "")
+            else:
+                # no LLM → trust structural similarity alone
+                is_dup = True
+
+            if is_dup:
+                dup = DuplicateFunction(
+                    functions=[func1, func2],
+                    similarity=sim,
+                    reason=reason,
+                )
+                dup.suggestion = suggestion
+                duplicates.append(dup)
+                if console:
+                    console.print("    [red]⚠ Confirmed duplicate![/red]")
+            else:
+                if console:
+                    console.print("    [green]✓ Not a duplicate[/green]")
 
         return duplicates
 
@@ -199,9 +247,32 @@ class CrossFileRedundancyDetector:
             tree = ast.parse(code)
         except SyntaxError:
             return ""
+        return self._python_fingerprint_node(tree)
 
-        tokens = []
-        for node in ast.walk(tree):
+    def _def_node(self, func: Symbol):
+        """Look up a function's node in the file's shared AST instead of re-parsing its body."""
+        index = self._def_nodes.get(func.file)
+        if index is None:
+            index = {}
+            try:
+                module = self.unit_parser.parse_file(func.file).module
+            except Exception:
+                module = None
+            if module is not None:
+                for node in ast.walk(module):
+                    if isinstance(node, (ast.FunctionDef, ast.AsyncFunctionDef)):
+                        index[(node.name, node.lineno)] = node
+            self._def_nodes[func.file] = index
+        return index.get((func.name, func.line))
+
+    def _python_fingerprint_node(self, root: ast.AST) -> str:
+        """Token stream for an AST subtree (matches a fingerprint of its parsed source segment)."""
+        tokens = [] if isinstance(root, ast.Module) else ["Module"]
+        if getattr(root, "decorator_list", None):
+            # The source segment of a def starts at `def`, so decorators never contributed
+            root = copy.copy(root)
+            root.decorator_list = []
+        for node in ast.walk(root):
             if isinstance(node, ast.BinOp):
                 tokens.append(f"BinOp_{type(node.op).__name__}")
             elif isinstance(node, ast.JoinedStr):
@@ -282,7 +353,7 @@ class CrossFileRedundancyDetector:
 
     # ── LLM Verification ─────────────────────────────────────────────
 
-    async def _llm_verify(self, func1: Symbol, func2: Symbol) -> Dict:
+    async def _llm_verify(self, candidate: DuplicateCandidate) -> Dict:
         """
         Ask the LLM whether two functions are functionally equivalent.
         Returns dict with 'are_duplicates', 'shared_logic_summary',
@@ -293,14 +364,14 @@ class CrossFileRedundancyDetector:
 
         prompt = f"""You are a strict code similarity auditor. Determine if these two functions perform THE EXACT SAME TASK.
 
-Function A — "{func1.name}":
+Function A — "{candidate.func1.name}":
 ```
-{func1.body_code}
+{candidate.body1}
 ```
 
-Function B — "{func2.name}":
+Function B — "{candidate.func2.name}":
 ```
-{func2.body_code}
+{candidate.body2}
 ```
 
 INSTRUCTIONS:
@@ -21,8 +21,11 @@ class LLMBugDetector:
     Detects semantic bugs using LLM inference.
     """
     
-    def __init__(self, llm_client):
+    def __init__(self, llm_client, priority: int = None):
         self.llm_client = llm_client
+        # Scheduling priority for VLLMClient (None = the client's default, interactive)
+        self.request_options = {"priority": priority} if priority is not None else {}
+        self.failed: List[str] = []  # Audits whose LLM request or response failed
     
     async def analyze_symbol(
         self, 
@@ -51,7 +54,7 @@ class LLMBugDetector:
             print("[bold blue]--------------------------------------------------[/bold blue]\n")
             
         try:
-            response = await self.llm_client.generate_completion(prompt, temperature=0.1)
+            response = await self.llm_client.generate_completion(prompt, temperature=0.1, **self.request_options)
             result = robust_json_load(response)
             
             if not result or not result.get("issues"):
@@ -71,8 +74,55 @@ class LLMBugDetector:
             return bugs, corrected_code
         except Exception as e:
             print(f"Focused analysis failed for {symbol_name}: {e}")
+            self.failed.append(symbol_name)
             return [], ""
 
+    @staticmethod
+    def file_context(parse_result: Dict) -> tuple[str, str]:
+        """(imports_list, global_vars) prompt context from a file's structural parse."""
+        imports_str = ""
+        global_vars_str = ""
+        parsed_imports = parse_result.get("imports", [])
+        if parsed_imports:
+            imp_lines = []
+            for imp in parsed_imports:
+                if isinstance(imp, dict):
+                    mod = imp.get("module", "")
+                    nms = imp.get("names", [])
+                    if nms: imp_lines.append(f"from {mod} import {', '.join(nms)}")
+                    elif mod: imp_lines.append(mod)
+                else: imp_lines.append(str(imp))
+            imports_str = "\n".join(imp_lines)
+        
+        parsed_globals = parse_result.get("global_vars", [])
+        if parsed_globals:
+            global_vars_str = "\n".join(parsed_globals)
+        return imports_str, global_vars_str
+
+    @staticmethod
+    def symbol_context(parse_result: Dict, target_func: Dict, target_body: str) -> tuple[str, str]:
+        """(class_context, dependency_hints) for one function record of a file's structural parse."""
+        sym_name = target_func["name"]
+        class_ctx = ""
+        if target_func.get("parent_class"):
+            cls_name = target_func["parent_class"]
+            cls_data = next((c for c in parse_result.get("classes", []) if c["name"] == cls_name), None)
+            if cls_data:
+                skel = [f"class {cls_name} {{"]
+                if cls_data.get("attributes"):
+                    for a in cls_data["attributes"]: skel.append(f"    {a};")
+                skel.append(f"    // ... other methods ...")
+                skel.append(f"    // === TARGET: {sym_name} ===")
+                for l in target_body.splitlines():
+                    skel.append(f"    {l}")
+                skel.append("}")
+                class_ctx = "\n".join(skel)
+
+        dep_hints = ""
+        if target_func.get("calls"):
+            dep_hints += "Functions this calls: " + ", ".join(target_func["calls"]) + "\n"
+        return class_ctx, dep_hints
+
     def _build_focused_prompt(
         self, name: str, code: str, lang: str, file: str, 
         class_ctx: str, dep_hints: str, global_vars: str, imports: str
@@ -151,7 +201,7 @@ Respond with a JSON object:
             print("[bold blue]--------------------------------------------------[/bold blue]\n")
         
         try:
-            response = await self.llm_client.generate_completion(prompt, temperature=0.1)
+            response = await self.llm_client.generate_completion(prompt, temperature=0.1, **self.request_options)
             # Parse JSON response
             result = robust_json_load(response)
             
@@ -172,6 +222,7 @@ Respond with a JSON object:
             return bugs, corrected_code
         except Exception as e:
             print(f"Whole-file analysis failed for {file_path}: {e}")
+            self.failed.append(str(file_path))
             return [], ""
     
     def _build_detection_prompt(self, file_path: Path, code: str, language: str) -> str:
@@ -5,7 +5,8 @@ Deterministic logic checks using AST traversal.
 
 import ast
 from pathlib import Path
-from typing import List, Dict
+from typing import List, Dict, Optional
+from core.parsed_unit import ParsedUnit
 
 class StaticBugDetector:
     """Detects deterministic bugs in Python code without AI."""
@@ -19,12 +20,13 @@ class StaticBugDetector:
         except Exception as e:
             return [{"line": 0, "message": f"Static analysis failed: {e}"}]
 
-    def analyze_code(self, code: str) -> List[Dict]:
-        """Analyze Python code string for bugs."""
-        try:
-            tree = ast.parse(code)
-        except SyntaxError:
-            return [] # Handled by Phase 2
+    def analyze_code(self, code: str, tree: Optional[ast.Module] = None) -> List[Dict]:
+        """Analyze Python code string for bugs. Pass `tree` to reuse an existing parse."""
+        if tree is None:
+            try:
+                tree = ast.parse(code)
+            except SyntaxError:
+                return [] # Handled by Phase 2
 
         issues = []
         
@@ -33,6 +35,12 @@ class StaticBugDetector:
         
         return issues
 
+    def analyze_unit(self, unit: ParsedUnit) -> List[Dict]:
+        """Analyze a shared ParsedUnit without re-parsing it."""
+        if unit.module is None:
+            return []
+        return self.analyze_code(unit.code, tree=unit.module)
+
     def _find_undefined_variables(self, tree: ast.AST) -> List[Dict]:
         """Simple scope analysis for undefined variables."""
         undefined = []
@@ -1,8 +1,50 @@
-import networkx as nx
+import time
+from concurrent.futures import ProcessPoolExecutor
 from pathlib import Path
-from typing import List, Dict, Any, Set
-from core.symbol_table import SymbolTableBuilder, Symbol as STSymbol, SymbolType as STSymbolType
+from typing import List, Dict, Any, Iterable, Optional, Set, Iterator, Tuple
+from core.symbol_table import (SymbolTableBuilder, Symbol as STSymbol, SymbolType as STSymbolType,
+                               module_name_for, qualify)
+from core.call_graph_builder import CallGraphBuilder
+from core.graph import GraphBuilder, OverlayGraph
+from core.pass_scheduler import PassScheduler
+from core.reachability import EntryPointPolicy, ReachabilityEngine
+from core.module_index import ModuleIndex
 from core.ast_parser import StructuralParser
+from core.source_cache import SourceCache
+from core.parsed_unit import UnitParser, FileSyntaxError, LANG_BY_EXT
+from core.parse_cache import ParseCache
+
+# ── Worker-process parsing (used when jobs > 1) ─────────────────
+# Tree-sitter parsers and compiled queries are not picklable, so each worker
+# builds its own StructuralParser once and reuses it for every file it gets.
+_worker_parser = None
+
+def _init_parse_worker():
+    global _worker_parser
+    _worker_parser = StructuralParser(UnitParser())
+
+def _check_in_worker(task: Tuple[str, str, bool]) -> Tuple[List[FileSyntaxError], Any, bool, str]:
+    """Syntax-check one file's text and, if valid, extract its structure from the same parse;
+    returns (syntax errors, parser output or None, was really parsed, error)."""
+    path_str, text, keep_structure = task
+    try:
+        path = Path(path_str)
+        unit = _worker_parser.unit_parser.parse_source(text, path.suffix, path)
+        data = _worker_parser.parse_unit(unit) if keep_structure and not unit.errors else None
+        return unit.errors, data, (unit.module is not None or unit.tree is not None), ""
+    except Exception as e:
+        return [], None, False, str(e)
+
+def _parse_in_worker(task: Tuple[str, str]) -> Tuple[Any, bool, str]:
+    """Parse one file's text; returns (parser output, was really parsed, error)."""
+    path_str, text = task
+    try:
+        path = Path(path_str)
+        unit = _worker_parser.unit_parser.parse_source(text, path.suffix, path)
+        data = _worker_parser.parse_unit(unit)
+        return data, (unit.module is not None or unit.tree is not None), ""
+    except Exception as e:
+        return None, False, str(e)
 
 class StructuralAnalyzer:
     """
@@ -13,120 +55,537 @@ class StructuralAnalyzer:
     - Dependency Graph (Import cycles)
     """
     
-    def __init__(self):
-        self.parser = StructuralParser()
-        self.symbol_table = SymbolTableBuilder()
-        self.call_graph = nx.DiGraph()
-        self.dependency_graph = nx.DiGraph()
+    # Fewer files than this are parsed in-process; shipping them to workers costs more than it saves
+    PARALLEL_MIN_FILES = 8
+    
+    def __init__(self, source_cache: SourceCache = None, unit_parser: UnitParser = None,
+                 parse_cache: ParseCache = None, jobs: int = 1, max_cycles_per_scc: int = 3,
+                 include_dirs: List[Path] = (), java_dispatch: str = "rta",
+                 entry_policy: EntryPointPolicy = None):
+        self.source_cache = source_cache or SourceCache()
+        self.unit_parser = unit_parser or UnitParser(self.source_cache)
+        self.parser = StructuralParser(self.unit_parser)
+        self.parse_cache = parse_cache
+        self.jobs = max(1, jobs)
+        self.max_cycles_per_scc = max_cycles_per_scc
+        self.symbol_table = SymbolTableBuilder(self.source_cache.files)
+        self.module_index = ModuleIndex(self.source_cache.files, include_dirs)
+        # Function and file dependency graphs
+        self.call_graph = CallGraphBuilder(self.symbol_table, self.module_index, java_dispatch)
+        # Dead code = functions not reachable from any entry point
+        self.entry_policy = entry_policy or EntryPointPolicy()
+        self.reachability = ReachabilityEngine()
+        # Post-parse passes, each run once its declared inputs are available
+        self.passes = PassScheduler()
+        self._register_passes()
         self.file_data_map = {} # path -> parser output
+        self.results: Optional[Dict[str, Any]] = None  # last analysis, patched by update_files()
+        self._imported_names: Set[str] = set()  # names any file imports (unused-variable check)
+        # Function-cycle graph and its cyclic SCCs with their cycles, patched by update_files()
+        self._cycle_graph = OverlayGraph()
+        self._cycle_components: List[Tuple[List[int], List[List[int]]]] = []
+        # path -> (content hash, parser output) extracted by check_syntax(), consumed by _parse_files()
+        self._prepared: Dict[str, Tuple[str, Dict[str, Any]]] = {}
+        self._pool: Optional[ProcessPoolExecutor] = None  # parse workers when jobs > 1, see close()
+
+    def check_syntax(self, files: Iterable[Path], keep_structure: bool = True
+                     ) -> Iterator[Tuple[Path, bool, List[FileSyntaxError]]]:
+        """
+        Syntax-check files, yielding (path, is_valid, errors) in input order.
+        The structure of each valid file is extracted from the same parse and
+        kept for the next analyze_codebase() / update_files(), so the file is
+        not parsed again however few units the UnitParser keeps. With jobs > 1
+        the parent serves cache hits and workers parse the rest.
+        """
+        if self.jobs <= 1:
+            for file_path in files:
+                yield (file_path,) + self._check_file(file_path, keep_structure)
+            return
+        
+        files = list(files)
+        checked, misses = {}, []
+        for file_path in files:
+            source, language, result = self._check_cached(file_path, keep_structure)
+            if result is not None:
+                checked[str(file_path)] = result
+            else:
+                misses.append((file_path, source, language))
+        
+        if len(misses) < self.PARALLEL_MIN_FILES:
+            for file_path, _, _ in misses:
+                checked[str(file_path)] = self._check_file(file_path, keep_structure)
+        else:
+            tasks = [(str(file_path), source.text, keep_structure) for file_path, source, _ in misses]
+            for (file_path, source, language), (errors, data, parsed, error) in zip(
+                    misses, self._worker_pool().map(_check_in_worker, tasks, chunksize=self._chunksize(len(tasks)))):
+                if error:
+                    print(f"Error parsing {file_path} in worker: {error}")
+                    checked[str(file_path)] = self._check_file(file_path, keep_structure)
+                    continue
+                checked[str(file_path)] = self._record_check(file_path, source, language, errors, data,
+                                                             parsed, keep_structure)
+        
+        for file_path in files:
+            yield (file_path,) + checked[str(file_path)]
+
+    def _check_cached(self, file_path: Path, keep_structure: bool):
+        """
+        (source, language, result): result is (is_valid, errors) when no parse is
+        needed (no parser for the extension, unreadable file, or parse-cache hit).
+        """
+        language = LANG_BY_EXT.get(file_path.suffix.lower())
+        if not language:
+            return None, None, (True, [])
+        try:
+            source = self.source_cache.get(file_path)
+        except OSError as e:
+            return None, language, (False, [FileSyntaxError(f"Read error: {str(e)}", "io-error")])
+        if not self.parse_cache:
+            return source, language, None
+        
+        cached = self.parse_cache.get("syntax", source.content_hash, language, UnitParser.VERSION)
+        if cached is None:
+            return source, language, None
+        errors = [FileSyntaxError(**e) for e in cached]
+        if not keep_structure or errors:
+            return source, language, (not errors, errors)
+        data = self.parse_cache.get("structure", source.content_hash, language, StructuralParser.VERSION)
+        if data is None:
+            return source, language, None
+        self._prepared[str(file_path)] = (source.content_hash, data)
+        return source, language, (True, [])
+
+    def _check_file(self, file_path: Path, keep_structure: bool) -> Tuple[bool, List[FileSyntaxError]]:
+        source, language, result = self._check_cached(file_path, keep_structure)
+        if result is not None:
+            return result
+        unit = self.unit_parser.parse_file(file_path)
+        data = self.parser.parse_unit(unit) if keep_structure and not unit.errors else None
+        # Only cache real parses; a missing Tree-sitter grammar reports nothing
+        parsed = unit.module is not None or unit.tree is not None
+        return self._record_check(file_path, source, language, unit.errors, data, parsed, keep_structure)
+
+    def _record_check(self, file_path: Path, source, language: str, errors: List[FileSyntaxError],
+                      data: Optional[Dict[str, Any]], parsed: bool, keep_structure: bool
+                      ) -> Tuple[bool, List[FileSyntaxError]]:
+        """Cache one fresh parse's syntax result and structure, and keep the structure for _parse_files()."""
+        if self.parse_cache and (parsed or errors):
+            self.parse_cache.put("syntax", source.content_hash, language, UnitParser.VERSION, [
+                {"message": e.message, "parser": e.parser, "line": e.line, "column": e.column}
+                for e in errors
+            ])
+        if data is not None and self.parse_cache and parsed:
+            self.parse_cache.put("structure", source.content_hash, language, StructuralParser.VERSION, data)
+        if keep_structure and not errors and data is not None:
+            self._prepared[str(file_path)] = (source.content_hash, data)
+        return not errors, errors
+
+    def _worker_pool(self) -> ProcessPoolExecutor:
+        """Parse workers, started on first use and kept until close()."""
+        if self._pool is None:
+            self._pool = ProcessPoolExecutor(max_workers=self.jobs, initializer=_init_parse_worker)
+        return self._pool
+
+    def _chunksize(self, tasks: int) -> int:
+        return max(1, tasks // (self.jobs * 8))
+
+    def close(self):
+        """Shut down the parse workers, if any were started."""
+        if self._pool is not None:
+            self._pool.shutdown()
+            self._pool = None
 
     def analyze_codebase(self, files: List[Path]) -> Dict[str, Any]:
         """Run full structural analysis on a list of files."""
         print(f"Analysing {len(files)} files structurally...")
         
-        all_identifiers_global = [] 
+        # 1. Parse all files (in worker processes when jobs > 1) and collect definitions
+        for file_path, data in self._parse_files(files):
+            self._index_file(file_path, data)
         
-        # 1. Parse all files and collect definitions
-        for file_path in files:
-            try:
-                with open(file_path, 'r', encoding='utf-8') as f:
-                    code = f.read()
-                
-                ext = file_path.suffix.lower()
-                lang = "python" if ext == ".py" else ("java" if ext == ".java" else "c/cpp")
-                
-                data = self.parser.parse(code, file_path)
-                self.file_data_map[str(file_path)] = data
-                module_name = file_path.stem
-                
-                # Extract symbols and populate SymbolTableBuilder
-                for func in data.get("functions", []):
-                    sym = STSymbol(
-                        name=func["name"],
-                        symbol_type=STSymbolType.FUNCTION,
-                        file_path=file_path,
-                        line=func["line"],
-                        signature=func.get("signature", ""),
-                        body_code=func.get("body_code", ""),
-                        parent_name=func.get("parent_class", "")
-                    )
-                    self.symbol_table.add_symbol(sym, module_name)
-                    # Register nodes in call graph
-                    self.call_graph.add_node(sym.qualified_name)
-                    
-                for cls in data.get("classes", []):
-                    sym = STSymbol(
-                        name=cls["name"],
-                        symbol_type=STSymbolType.CLASS,
-                        file_path=file_path,
-                        line=cls["line"],
-                        signature=f"class {cls['name']}"
-                    )
-                    self.symbol_table.add_symbol(sym, module_name)
-                
-                for var in data.get("variables", []):
-                    # We don't have a special type for globals in STSymbolType, use VARIABLE
-                    sym = STSymbol(
-                        name=var["name"],
-                        symbol_type=STSymbolType.VARIABLE, # Assuming it exists in core.symbol_table
-                        file_path=file_path,
-                        line=var["line"],
-                        signature=var["name"]
-                    )
-                    self.symbol_table.add_symbol(sym, module_name)
-
-                # Track usage identifiers for cross-file variable analysis
-                for id_name in data.get("identifiers", []):
-                    all_identifiers_global.append(id_name)
-                
-                # Track imports for dependency graph
-                for imp in data.get("imports", []):
-                    module_name_imp = imp.get("module") or (imp["names"][0] if imp.get("names") else "")
-                    if module_name_imp:
-                        self.dependency_graph.add_edge(file_path.name, module_name_imp)
-
-            except Exception as e:
-                print(f"Error parsing {file_path}: {e}")
+        if self.parse_cache:
+            self.parse_cache.flush()
         
         # Sync raw_data alias for detection methods
         self.raw_data = self.file_data_map
         
-        # 2. Run Structural Checks (using the fully populated symbol table)
+        return self._run_passes()
+
+    def update_files(self, changed: List[Path], removed: List[Path] = ()) -> Dict[str, Any]:
+        """
+        Patch a previous analysis after files changed on disk. Changed files are
+        re-parsed (unless check_syntax() already did) and indexed again; symbols
+        that survive an edit keep their ID.
+
+        An update that only adds code (no file removed, no symbol, call or entry
+        point dropped, same imports, package and classes, and no new function
+        name used by another file) is applied in place: the changed files' calls
+        are resolved again and their new edges and entry points are fed to
+        ReachabilityEngine.add_file(), so only what they newly reach is visited.
+        Cycles and unused variables are recomputed only if the change can affect
+        them. Anything else compacts the symbol IDs and re-runs every pass.
+        """
+        started = time.perf_counter()
+        changed = list(changed)
+        for file_path in list(removed) + changed:
+            if str(file_path) in self._prepared:
+                continue  # just read and parsed by check_syntax()
+            self.unit_parser.forget(file_path)
+            self.source_cache.invalidate(file_path)
+        for file_path in removed:
+            self.symbol_table.remove_file(file_path)
+            self.file_data_map.pop(str(file_path), None)
         
-        # Cycle Detection
-        function_cycles = self._detect_function_cycles(self.symbol_table)
+        parsed = list(self._parse_files(changed))
+        if self.parse_cache:
+            self.parse_cache.flush()
+        previous = {str(file_path): self.file_data_map.get(str(file_path)) for file_path, _ in parsed}
         
-        # Dead Code
-        dead_code = self._detect_dead_code(self.symbol_table)
+        # Files that failed to parse drop out like removed ones
+        failed = [file_path for file_path in changed if str(file_path) not in previous]
+        for file_path in failed:
+            self.symbol_table.remove_file(file_path)
+            self.file_data_map.pop(str(file_path), None)
         
-        # Unused Variables
-        unused_vars = self._detect_unused_variables(self.symbol_table)
+        before = None
+        if not removed and not failed and self.results is not None and self._is_additive(parsed, previous):
+            before = self._file_graph_records(parsed, previous)
         
-        return {
+        for file_path, data in parsed:
+            self.symbol_table.remove_file(file_path)
+            self._index_file(file_path, data)
+        self.raw_data = self.file_data_map
+        
+        if before is not None and not self.symbol_table.released:
+            results = self._apply_additive(parsed, previous, before)
+            if results is not None:
+                results["pass_timings"] = {"incremental_update": time.perf_counter() - started}
+                return results
+        
+        self.symbol_table.compact()
+        return self._run_passes()
+
+    def _is_additive(self, parsed: List[Tuple[Path, Dict[str, Any]]],
+                     previous: Dict[str, Optional[Dict[str, Any]]]) -> bool:
+        """True if the re-parsed files only gained symbols that no other file refers to yet."""
+        file_ids = {self.source_cache.file_id(file_path) for file_path, _ in parsed}
+        new_names = set()
+        for file_path, data in parsed:
+            is_java = file_path.suffix.lower() == '.java'
+            before = previous[str(file_path)]
+            if before is None:
+                # A new package or class changes how other files resolve names
+                if file_path.name == "__init__.py" or data.get("classes"):
+                    return False
+                old_names = set()
+            else:
+                if (before.get("imports") != data.get("imports") or before.get("package") != data.get("package")
+                        or _class_shapes(before) != _class_shapes(data)
+                        or is_java and before.get("instantiations") != data.get("instantiations")):
+                    return False
+                old_names = _symbol_names(file_path, before)
+            names = _symbol_names(file_path, data)
+            # Java methods feed the class hierarchy and overload sets: those must not change
+            if not old_names <= names or (is_java and before is not None and old_names != names):
+                return False
+            new_names.update(name for _, name in names - old_names)
+        return not any(self.call_graph.referenced_from(name) - file_ids for name in new_names)
+
+    def _file_graph_records(self, parsed: List[Tuple[Path, Dict[str, Any]]],
+                            previous: Dict[str, Optional[Dict[str, Any]]]) -> Dict[str, Set]:
+        """Call edges, dynamic calls and entry points the changed files contribute now."""
+        graph = self.call_graph.calls
+        edges, dynamic_calls, entries = set(), set(), set()
+        for file_path, data in parsed:
+            if previous[str(file_path)] is None:
+                continue
+            for symbol in self.symbol_table.get_symbols_in_file(file_path):
+                if symbol.id in graph:
+                    edges.update((symbol.id, callee) for callee in graph.successors(symbol.id))
+            dynamic_calls.update(self.call_graph.dynamic_calls.get(self.source_cache.file_id(file_path), ()))
+            entries.update(self.entry_policy.file_entry_points(file_path, previous[str(file_path)],
+                                                               self.symbol_table, self.call_graph))
+        return {"edges": edges, "dynamic_calls": dynamic_calls, "entries": entries}
+
+    def _apply_additive(self, parsed: List[Tuple[Path, Dict[str, Any]]],
+                        previous: Dict[str, Optional[Dict[str, Any]]],
+                        before: Dict[str, Set]) -> Optional[Dict[str, Any]]:
+        """
+        Resolve the changed files again and patch the previous results.
+        Returns None if the files turn out to have lost edges or entry points
+        (liveness is monotone, so that needs a rebuild).
+        """
+        new_files = [file_path for file_path, _ in parsed if previous[str(file_path)] is None]
+        for file_path in new_files:
+            self.module_index.add_file(file_path, self.file_data_map[str(file_path)])
+        
+        edges, dynamic_calls, entries = set(), set(), []
+        for file_path, data in parsed:
+            edges.update(self.call_graph.add_file(file_path, data))
+            dynamic_calls.update(self.call_graph.dynamic_calls.get(self.source_cache.file_id(file_path), ()))
+            entries.extend(self.entry_policy.file_entry_points(file_path, data, self.symbol_table, self.call_graph))
+        if not (before["edges"] <= edges and before["dynamic_calls"] <= dynamic_calls
+                and before["entries"] <= set(entries)):
+            return None
+        
+        added = edges - before["edges"]
+        added_dynamic = self.call_graph.dynamic_call_edges(dynamic_calls - before["dynamic_calls"])
+        self.reachability.add_file(entries, list(added) + added_dynamic)
+        
+        results = dict(self.results)
+        results["symbol_table_object"] = self.symbol_table
+        results["raw_data"] = self.file_data_map
+        results["dead_code"] = [symbol for symbol in self.symbol_table.get_symbols_by_type(STSymbolType.FUNCTION)
+                                if symbol.id not in self.reachability]
+        
+        # New cross-file calls or new files can close import cycles
+        file_graph = self.call_graph.file_graph
+        files_of = self.symbol_table.get_by_id
+        if new_files or any(not file_graph.has_edge(files_of(caller).file_id, files_of(callee).file_id)
+                            for caller, callee in added
+                            if files_of(caller).file_id != files_of(callee).file_id):
+            self.call_graph.link_files({Path(p): d for p, d in self.file_data_map.items()})
+            (results["circular_dependencies"], results["circular_dependency_paths"],
+             results["dependency_groups"]) = self._detect_circular_dependencies()
+        
+        if added or any(_call_records(data) != _call_records(previous[str(file_path)] or {})
+                        for file_path, data in parsed):
+            results["function_cycles"] = self._update_function_cycles(parsed)
+        else:
+            # Same IDs, new Symbol objects for the re-indexed files
+            results["function_cycles"] = [[self.symbol_table.get_by_id(symbol.id) for symbol in cycle]
+                                          for cycle in results["function_cycles"]]
+        results["function_sccs"] = self._function_sccs(self.symbol_table)
+        
+        if new_files:
+            results["unused_variables"] = self._detect_unused_variables(self.symbol_table)
+        else:
+            # Imports are unchanged, so only the changed files' own findings move
+            changed = {str(file_path) for file_path, _ in parsed}
+            by_file: Dict[str, List[Dict]] = {}
+            for var in results["unused_variables"]:
+                by_file.setdefault(var["path"], []).append(var)
+            unused = []
+            for file_path_str, data in self.raw_data.items():
+                if file_path_str in changed:
+                    unused.extend(self._unused_in_file(file_path_str, data))
+                else:
+                    unused.extend(by_file.get(file_path_str, ()))
+            results["unused_variables"] = unused
+        
+        self.results = results
+        return results
+
+    def _index_file(self, file_path: Path, data: Dict[str, Any]):
+        """Add one file's parser output to file_data_map and the symbol table."""
+        try:
+            self.file_data_map[str(file_path)] = data
+            module_name = module_name_for(file_path, data)
+            file_id = self.source_cache.file_id(file_path)
+            
+            # Extract symbols and populate SymbolTableBuilder
+            for func in data.get("functions", []):
+                sym = STSymbol(
+                    name=func["name"],
+                    symbol_type=STSymbolType.FUNCTION,
+                    file_path=file_path,
+                    line=func["line"],
+                    signature=func.get("signature", ""),
+                    parent_name=func.get("parent_class", ""),
+                    span=(file_id, *func["span"]) if func.get("span") else None,
+                    source=self.source_cache
+                )
+                self.symbol_table.add_symbol(sym, module_name, func.get("param_types"))
+                
+            for cls in data.get("classes", []):
+                # Nested classes are named Outer.Inner; keep Inner findable by its simple name
+                outer, _, simple_name = cls["name"].rpartition(".")
+                sym = STSymbol(
+                    name=simple_name,
+                    symbol_type=STSymbolType.CLASS,
+                    file_path=file_path,
+                    line=cls["line"],
+                    signature=f"class {simple_name}",
+                    parent_name=outer,
+                    span=(file_id, *cls["span"]) if cls.get("span") else None,
+                    source=self.source_cache
+                )
+                self.symbol_table.add_symbol(sym, module_name)
+            
+            for var in data.get("variables", []):
+                # We don't have a special type for globals in STSymbolType, use VARIABLE
+                sym = STSymbol(
+                    name=var["name"],
+                    symbol_type=STSymbolType.VARIABLE, # Assuming it exists in core.symbol_table
+                    file_path=file_path,
+                    line=var["line"],
+                    signature=var["name"]
+                )
+                self.symbol_table.add_symbol(sym, module_name)
+
+        except Exception as e:
+            print(f"Error indexing {file_path}: {e}")
+
+    def _run_passes(self) -> Dict[str, Any]:
+        """Build the graphs and run the structural checks over the current file_data_map."""
+        # 2. Graph building and structural checks (using the fully populated symbol table)
+        parsed_files = {Path(p): d for p, d in self.file_data_map.items()}
+        outputs = self.passes.run({
+            "parsed_files": parsed_files,
+            "raw_data": self.raw_data,
+            "symbol_table": self.symbol_table,
+        })
+        circular_dependencies, circular_dependency_paths, dependency_groups = outputs["circular_dependencies"]
+        
+        self.results = {
             "symbol_table_object": self.symbol_table,
-            "circular_dependencies": [], # File-level, handled by main.py or separate logic
-            "function_cycles": function_cycles,
-            "dead_code": dead_code,
-            "unused_variables": unused_vars,
+            "circular_dependencies": circular_dependencies,
+            "circular_dependency_paths": circular_dependency_paths,
+            "dependency_groups": dependency_groups,
+            "function_cycles": outputs["function_cycles"],
+            "function_sccs": self._function_sccs(self.symbol_table),
+            "dead_code": outputs["dead_code"],
+            "unused_variables": outputs["unused_variables"],
+            "pass_timings": dict(self.passes.timings),
             "raw_data": self.file_data_map
         }
+        return self.results
 
-    def _build_import_graph(self) -> Dict[str, Set[str]]:
-        """Map file paths to the modules/files they import."""
-        graph = {} # {str(file_path): set(imported_names)}
+    def _register_passes(self):
+        """
+        Declare each post-parse step with the artifacts it reads; the scheduler
+        runs them one after another in that dependency order.
+        """
+        register = self.passes.register
+        # Function call graph and file dependency graph over symbol/file IDs
+        register("module_index", lambda parsed_files: self._build_module_index(parsed_files),
+                 inputs=("parsed_files",))
+        register("call_graph", lambda parsed_files, module_index: self._build_call_graph(parsed_files),
+                 inputs=("parsed_files", "module_index"))
         
-        for file_path, data in self.raw_data.items():
-            imports = set()
-            for imp in data.get("imports", []):
-                # Handle 'from x import y' and 'import x'
-                if imp["module"]:
-                    imports.add(imp["module"])
-                for name in imp["names"]:
-                    if not imp["module"]:
-                        imports.add(name)
-            graph[file_path] = imports
-            
-        return graph
+        # Cycle Detection
+        register("circular_dependencies", lambda call_graph: self._detect_circular_dependencies(),
+                 inputs=("call_graph",))
+        register("function_cycles",
+                 lambda symbol_table, raw_data, call_graph: self._detect_function_cycles(symbol_table),
+                 inputs=("symbol_table", "raw_data", "call_graph"))
+        
+        # Dead Code
+        register("dead_code",
+                 lambda symbol_table, parsed_files, call_graph: self._detect_dead_code(symbol_table, parsed_files),
+                 inputs=("symbol_table", "parsed_files", "call_graph"))
+        
+        # Unused Variables
+        register("unused_variables", lambda symbol_table, raw_data: self._detect_unused_variables(symbol_table),
+                 inputs=("symbol_table", "raw_data"))
+
+    def _build_call_graph(self, parsed_files: Dict[Path, Dict[str, Any]]) -> CallGraphBuilder:
+        self.call_graph.build_call_graph(parsed_files)
+        return self.call_graph
+
+    def _build_module_index(self, parsed_files: Dict[Path, Dict[str, Any]]) -> ModuleIndex:
+        """Resolve imports through the module index, reusing the cached one if no file changed."""
+        if not self.parse_cache:
+            self.module_index.build(parsed_files)
+            return self.module_index
+        
+        fingerprint = ModuleIndex.fingerprint(
+            (str(p), self.source_cache.get(p).content_hash) for p in parsed_files
+        )
+        if not self.module_index.load(self.parse_cache.cache_dir, fingerprint):
+            self.module_index.build(parsed_files)
+            self.module_index.save(self.parse_cache.cache_dir, fingerprint)
+        return self.module_index
+
+    def _take_prepared(self, file_path: Path) -> Optional[Dict[str, Any]]:
+        """Parser output kept by check_syntax(), if the file has not changed since."""
+        entry = self._prepared.pop(str(file_path), None)
+        if entry is None:
+            return None
+        try:
+            content_hash = self.source_cache.get(file_path).content_hash
+        except OSError:
+            return None
+        return entry[1] if entry[0] == content_hash else None
+
+    def _parse_files(self, files: List[Path]) -> Iterator[Tuple[Path, Dict[str, Any]]]:
+        """
+        Yield (path, parser output) in input order. Output kept by check_syntax()
+        is used as is; the rest is parsed, cache misses in parallel if enabled.
+        """
+        prepared = {}
+        for file_path in files:
+            data = self._take_prepared(file_path)
+            if data is not None:
+                prepared[str(file_path)] = data
+        if prepared:
+            parsed = dict(self._parse_files([f for f in files if str(f) not in prepared]))
+            for file_path in files:
+                data = prepared[str(file_path)] if str(file_path) in prepared else parsed.get(file_path)
+                if data is not None:
+                    yield file_path, data
+            return
+        
+        if self.jobs <= 1 or len(files) < self.PARALLEL_MIN_FILES:
+            for file_path in files:
+                try:
+                    yield file_path, self._parse_file(file_path)
+                except Exception as e:
+                    print(f"Error parsing {file_path}: {e}")
+            return
+        
+        # Parent reads sources (once, via the source cache) and serves cache hits;
+        # only misses are shipped to the workers.
+        results = {}
+        misses = []
+        for file_path in files:
+            try:
+                source = self.source_cache.get(file_path)
+            except Exception as e:
+                print(f"Error parsing {file_path}: {e}")
+                continue
+            language = LANG_BY_EXT.get(file_path.suffix.lower())
+            data = None
+            if self.parse_cache and language:
+                data = self.parse_cache.get("structure", source.content_hash, language, StructuralParser.VERSION)
+            if data is not None:
+                results[str(file_path)] = data
+            else:
+                misses.append((str(file_path), source.text, source.content_hash, language))
+        
+        if misses:
+            tasks = [(path_str, text) for path_str, text, _, _ in misses]
+            for (path_str, _, content_hash, language), (data, parsed, error) in zip(
+                    misses, self._worker_pool().map(_parse_in_worker, tasks, chunksize=self._chunksize(len(tasks)))):
+                if error:
+                    print(f"Error parsing {path_str}: {error}")
+                    continue
+                results[path_str] = data
+                if self.parse_cache and language and parsed:
+                    self.parse_cache.put("structure", content_hash, language, StructuralParser.VERSION, data)
+        
+        for file_path in files:
+            data = results.get(str(file_path))
+            if data is not None:
+                yield file_path, data
+
+    def _parse_file(self, file_path: Path) -> Dict[str, Any]:
+        """Parser output for one file, served from the persistent cache when the content is unchanged."""
+        language = LANG_BY_EXT.get(file_path.suffix.lower())
+        if not self.parse_cache or not language:
+            return self.parser.parse_unit(self.unit_parser.parse_file(file_path))
+        
+        source = self.source_cache.get(file_path)
+        data = self.parse_cache.get("structure", source.content_hash, language, StructuralParser.VERSION)
+        if data is not None:
+            return data
+        
+        unit = self.unit_parser.parse_file(file_path)
+        data = self.parser.parse_unit(unit)
+        # Don't persist empty results produced only because a grammar failed to load
+        if unit.module is not None or unit.tree is not None:
+            self.parse_cache.put("structure", source.content_hash, language, StructuralParser.VERSION, data)
+        return data
 
     def _collect_definitions(self) -> Dict[str, Dict]:
         """Aggregate all function/class definitions."""
@@ -139,66 +598,92 @@ class StructuralAnalyzer:
             }
         return defs
 
-    def _detect_cycles(self, graph: Dict[str, Set[str]]) -> List[List[str]]:
-        """Find circular import dependencies."""
-        cycles = []
-        # Simplified DFS for cycles
-        def find_path(current, visited, path):
-            visited.add(current)
-            path.append(current)
-            
-            # Approximate mapping: imports are module names, keys are file paths
-            # We need to map module names back to file paths or check strictly by name
-            # This is hard without full module resolution. 
-            # For now, we cycle check simplistic "names" if plausible?
-            # actually, let's skip complex mapping:
-            # If we see import 'utils', and we scanned 'utils.py', we assume link.
-            
-            imps = graph.get(current, set())
-            
-            # Simple heuristic mapping for this project structure
-            # If imported name appears in a scanned file path
-            targets = []
-            for imp in imps:
-                # Find matching file in graph keys
-                for fpath in graph.keys():
-                    if imp in fpath or (imp + ".py") in fpath:
-                         targets.append(fpath)
-            
-            for neighbor in targets:
-                if neighbor in path:
-                    # Found cycle
-                    cycle_slice = path[path.index(neighbor):] + [neighbor]
-                    # Format nicely
-                    clean_cycle = [Path(p).name for p in cycle_slice]
-                    if clean_cycle not in cycles:
-                        cycles.append(clean_cycle)
-                elif neighbor not in visited:
-                    find_path(neighbor, visited, path)
-            
-            path.pop()
-            visited.remove(current)
-
-        # check all nodes
-        # Optimization: only check if unvisited? Cycle detection usually needs full DFS
-        # But for limited set ok.
-        
-        # Only run on subset to avoid massive recursion in huge repos
-        # We limit to finding first few cycles
-        try:
-            for node in list(graph.keys()):
-                find_path(node, set(), [])
-                if len(cycles) > 5: break
-        except RecursionError:
-            pass
-            
-        return cycles
+    def _detect_circular_dependencies(self) -> Tuple[List[List[str]], List[List[str]], List[Dict[str, Any]]]:
+        """
+        Find circular import dependencies.
+        Strongly connected groups of files are found with Tarjan's algorithm on
+        the file graph, and each group contributes at most `max_cycles_per_scc`
+        shortest cycles, so tangled modules cannot blow up the output.
+        Cycles are closed (first file repeated at the end) and use file names;
+        the same cycles with full paths come second, for filtering by file.
+        """
+        groups = self.call_graph.find_dependency_groups(self.max_cycles_per_scc)
+        cycles, cycle_paths = [], []
+        for group in groups:
+            for cycle in group["cycles"]:
+                names = [Path(p).name for p in cycle]
+                cycles.append(names + names[:1])
+                cycle_paths.append(cycle + cycle[:1])
+        return cycles, cycle_paths, groups
 
     def _detect_function_cycles(self, symbol_builder: SymbolTableBuilder) -> List[List[STSymbol]]:
         """
         Find circular function dependencies (recursion/mutual recursion).
         Uses dependency-based call resolution instead of name-based matching.
+        Cycles come from an iterative SCC pass over symbol IDs (no recursion limit).
+        """
+        edges = GraphBuilder(symbol_builder.id_capacity)
+        for caller, callee in self._cycle_edges(symbol_builder,
+                                                symbol_builder.get_symbols_by_type(STSymbolType.FUNCTION)):
+            edges.add_edge(caller, callee)
+        self._cycle_graph = OverlayGraph(edges.build())
+        # Iterative Tarjan SCCs; each cyclic SCC contributes its shortest cycles
+        self._cycle_components = self._cycle_graph.base.representative_cycles(self.max_cycles_per_scc)
+        return self._function_cycles(symbol_builder)
+
+    def _update_function_cycles(self, parsed: List[Tuple[Path, Dict[str, Any]]]) -> List[List[STSymbol]]:
+        """
+        Patch the function cycles after an additive update. The changed files'
+        calls are resolved again and new edges go into the cycle graph's overlay.
+        Only an SCC that contains a new edge can differ from before, and all of
+        its nodes lie on a path from a new edge's target back to a new edge's
+        source, so Tarjan runs on that region alone.
         """
+        graph = self._cycle_graph
+        symbols = [symbol for file_path, _ in parsed for symbol in self.symbol_table.get_symbols_in_file(file_path)
+                   if symbol.type == STSymbolType.FUNCTION]
+        edges = set(self._cycle_edges(self.symbol_table, symbols))
+        old = {(symbol.id, callee) for symbol in symbols if symbol.id in graph
+               for callee in graph.successors(symbol.id)}
+        if not old <= edges:
+            return self._detect_function_cycles(self.symbol_table)
+        added = [edge for edge in edges - old if graph.add_edge(*edge)]
+        if added:
+            region = graph.reachable([caller for caller, _ in added], reverse=True)
+            region = graph.reachable([callee for _, callee in added], within=region)
+            # Remap to 0..k-1 in ID order, so the subgraph yields the same cycles a full pass would
+            nodes = sorted(region)
+            local = {node: i for i, node in enumerate(nodes)}
+            sub = GraphBuilder(len(nodes))
+            for node in nodes:
+                for callee in graph.successors(node):
+                    if callee in local:
+                        sub.add_edge(local[node], local[callee])
+            found = []
+            for component, cycles in sub.build().representative_cycles(
+                    self.max_cycles_per_scc, degree=lambda i: graph.out_degree(nodes[i])):
+                members = {nodes[i] for i in component}
+                if any(caller in members and callee in members for caller, callee in added):
+                    found.append(([nodes[i] for i in component], [[nodes[i] for i in cycle] for cycle in cycles]))
+            merged = {node for component, _ in found for node in component}
+            self._cycle_components = [(component, cycles) for component, cycles in self._cycle_components
+                                      if merged.isdisjoint(component)] + found
+        return self._function_cycles(self.symbol_table)
+
+    def _function_cycles(self, symbol_builder: SymbolTableBuilder) -> List[List[STSymbol]]:
+        id_cycles = [cycle for _, cycles in self._cycle_components for cycle in cycles]
+        # Report in definition order rather than Tarjan's reverse topological order
+        id_cycles.sort(key=min)
+        return [[symbol_builder.get_by_id(sid) for sid in id_cycle] for id_cycle in id_cycles]
+
+    def _function_sccs(self, symbol_builder: SymbolTableBuilder) -> List[List[STSymbol]]:
+        """Cyclic SCCs of the function-cycle graph (all members, not only those on reported cycles)."""
+        return [[symbol_builder.get_by_id(sid) for sid in component] for component, _ in self._cycle_components]
+
+    def _cycle_edges(self, symbol_builder: SymbolTableBuilder,
+                     symbols: Iterable[STSymbol]) -> Iterator[Tuple[int, int]]:
+        """Call edges of the cycle graph that start at `symbols` (function symbols)."""
+        symbols = list(symbols)
         # Build class hierarchy: class_name -> [base_class_names]
         class_bases = {}  # class_name -> list of base class names
         class_methods = {}  # class_name -> {method_name: Symbol}
@@ -208,17 +693,19 @@ class StructuralAnalyzer:
                 class_bases[cls["name"]] = cls.get("bases", [])
                 class_methods[cls["name"]] = {}
         
+        function_symbols = symbol_builder.get_symbols_by_type(STSymbolType.FUNCTION)
+        
         # Populate class_methods from symbols
-        for qname, sym in symbol_builder.symbols.items():
-            if sym.type == STSymbolType.FUNCTION and sym.parent_name:
+        for sym in function_symbols:
+            if sym.parent_name:
                 if sym.parent_name not in class_methods:
                     class_methods[sym.parent_name] = {}
                 class_methods[sym.parent_name][sym.name] = sym
         
         # Build standalone functions map: (file, name) -> Symbol
         standalone_map = {}
-        for qname, sym in symbol_builder.symbols.items():
-            if sym.type == STSymbolType.FUNCTION and not sym.parent_name:
+        for sym in function_symbols:
+            if not sym.parent_name:
                 key = (str(sym.file), sym.name)
                 standalone_map[key] = sym
         
@@ -257,29 +744,27 @@ class StructuralAnalyzer:
                 if target:
                     return [target]
                 # Fallback: any standalone function with that name (cross-file)
-                results = []
-                for (fpath, name), sym in standalone_map.items():
-                    if name == call_name:
-                        results.append(sym)
-                return results
+                return [
+                    sym for sym in symbol_builder.find_symbols_by_name(call_name)
+                    if sym.type == STSymbolType.FUNCTION and not sym.parent_name
+                    and standalone_map.get((str(sym.file), sym.name)) is sym
+                ]
         
-        # Build graph: Symbol -> [Symbol]
-        graph = {}
-        for qname, sym in symbol_builder.symbols.items():
-            if sym.type != STSymbolType.FUNCTION:
-                continue
-            
-            graph[sym] = []
-            
-            file_data = self.raw_data.get(str(sym.file))
-            if not file_data:
+        # Index the callers' parse records once: (file, name, line) -> function record
+        func_records = {}
+        for file_path in {str(sym.file) for sym in symbols}:
+            for func in self.raw_data.get(file_path, {}).get("functions", []):
+                func_records[(file_path, func["name"], func["line"])] = func
+        
+        call_graph = self.call_graph.calls
+        for sym in symbols:
+            if sym.file.suffix.lower() == '.java' and sym.id in call_graph:
+                # Java: virtual dispatch already resolved through the class hierarchy
+                for callee in call_graph.successors(sym.id):
+                    yield sym.id, callee
                 continue
             
-            func_data = next(
-                (f for f in file_data["functions"]
-                 if f["name"] == sym.name and f["line"] == sym.line),
-                None
-            )
+            func_data = func_records.get((str(sym.file), sym.name, sym.line))
             if not func_data:
                 continue
             
@@ -287,208 +772,87 @@ class StructuralAnalyzer:
                 targets = resolve_call(call_info, sym)
                 for target in targets:
                     if target and target != sym or (target == sym and call_info.get("receiver") != "super"):
-                        graph[sym].append(target)
-        
-        # Find Cycles (DFS)
-        cycles = []
-        visited = set()
-        recursion_stack = []
-        
-        def dfs(current: STSymbol):
-            visited.add(current)
-            recursion_stack.append(current)
-            
-            for neighbor in graph.get(current, []):
-                if neighbor in recursion_stack:
-                    cycle_start = recursion_stack.index(neighbor)
-                    cycle = recursion_stack[cycle_start:]
-                    cycles.append(list(cycle))
-                elif neighbor not in visited:
-                    dfs(neighbor)
-            
-            recursion_stack.pop()
-        
-        for sym in graph.keys():
-            if sym not in visited:
-                dfs(sym)
-        
-        # Dedup cycles
-        unique_cycles = []
-        seen_str = set()
-        
-        for cyc in cycles:
-            sig = "->".join(sorted([s.qualified_name for s in cyc]))
-            if sig not in seen_str:
-                seen_str.add(sig)
-                unique_cycles.append(cyc)
-        
-        return unique_cycles
+                        yield sym.id, target.id
 
-    def _detect_dead_code(self, symbol_builder: SymbolTableBuilder) -> List[Dict]:
-        """Find functions that are never called anywhere across all files."""
-        # Collect ALL calls from ALL files
-        all_calls = set()
-        for data in self.raw_data.values():
-            for call in data.get("calls", []):
-                all_calls.add(call)
-        
-        # Collect decorated function names — these are called by frameworks implicitly
-        decorated_funcs = set()
-        for data in self.raw_data.values():
-            for func in data.get("functions", []):
-                if func.get("decorators"):
-                    decorated_funcs.add(func["name"])
-        
-        dead = []
-        for qname, symbol in symbol_builder.symbols.items():
-            # Only check functions and methods
-            if symbol.type != STSymbolType.FUNCTION:
-                continue
-            
-            # Skip ALL dunder methods (__init__, __del__, __str__, __repr__, etc.)
-            if symbol.name.startswith("__") and symbol.name.endswith("__"):
-                continue
-            
-            # Skip main/test functions
-            if "test" in symbol.name.lower() or "main" in symbol.name.lower():
-                continue
-            
-            # Skip decorated functions (called by frameworks: @property, @route, etc.)
-            if symbol.name in decorated_funcs:
-                continue
-            
-            # Check if this function name appears in ANY call across ALL files
-            if symbol.name not in all_calls:
-                dead.append(symbol)
+    def _detect_dead_code(self, symbol_builder: SymbolTableBuilder,
+                          parsed_files: Dict[Path, Dict[str, Any]]) -> List[STSymbol]:
+        """
+        Find functions that no entry point can reach through the resolved call graph
+        (entry points are chosen by self.entry_policy).
+        """
+        entries = self.entry_policy.entry_points(parsed_files, symbol_builder, self.call_graph)
+        self.reachability = ReachabilityEngine(self.call_graph.function_graph)
+        self.reachability.add_edges(self.call_graph.dynamic_call_edges())
+        self.reachability.add_entries(entries)
         
-        return dead
+        return [symbol for symbol in symbol_builder.get_symbols_by_type(STSymbolType.FUNCTION)
+                if symbol.id not in self.reachability]
 
     def _detect_unused_variables(self, symbol_builder: SymbolTableBuilder) -> List[Dict]:
         """
         Identify variables that are assigned but never used.
-        Checks same-file and cross-file usage via imports.
-        Tracks actual line numbers.
+        Merges the per-file summaries the parser computed in its single pass
+        ("unused_candidates": file-local results), then drops globals that
+        another file imports. No file is parsed again.
         """
-        import ast
-        
-        unused = []
-        
         # First pass: collect all names imported by any file (cross-file usage)
         cross_file_used = set()
         for file_path_str, data in self.raw_data.items():
             for imp in data.get("imports", []):
                 for name in imp.get("names", []):
                     cross_file_used.add(name)
+        self._imported_names = cross_file_used
         
+        unused = []
         for file_path_str, data in self.raw_data.items():
-            fpath = Path(file_path_str)
-            mod_name = fpath.stem
-            
-            try:
-                with open(fpath, 'r', encoding='utf-8') as f:
-                    code = f.read()
-                tree = ast.parse(code)
-            except:
+            unused.extend(self._unused_in_file(file_path_str, data))
+        return unused
+
+    def _unused_in_file(self, file_path_str: str, data: Dict[str, Any]) -> List[Dict]:
+        """One file's unused variables, given the names other files import."""
+        unused = []
+        summary = data.get("unused_candidates")
+        if not summary:
+            return unused
+        file_name = Path(file_path_str).name
+        
+        # Globals: unused in their own file AND not imported by other files
+        for name, line in summary.get("globals", []):
+            if name in self._imported_names:
                 continue
-            
-            # Track assignments with line numbers and all usages per scope
-            class UsageVisitor(ast.NodeVisitor):
-                def __init__(self):
-                    self.scope_stack = ["global"]
-                    # scope -> {name: line_number}
-                    self.assigns = {"global": {}}
-                    # scope -> set of used names
-                    self.usages = {"global": set()}
-                    # Track function parameter names to exclude them
-                    self.params = {"global": set()}
-                
-                @property
-                def scope(self):
-                    return self.scope_stack[-1]
-                
-                def visit_FunctionDef(self, node):
-                    scope_name = node.name
-                    self.scope_stack.append(scope_name)
-                    self.assigns[scope_name] = {}
-                    self.usages[scope_name] = set()
-                    self.params[scope_name] = set()
-                    
-                    # Mark function parameters as params (not unused variables)
-                    for arg in node.args.args:
-                        self.params[scope_name].add(arg.arg)
-                    if node.args.vararg:
-                        self.params[scope_name].add(node.args.vararg.arg)
-                    if node.args.kwarg:
-                        self.params[scope_name].add(node.args.kwarg.arg)
-                    
-                    self.generic_visit(node)
-                    self.scope_stack.pop()
-                
-                visit_AsyncFunctionDef = visit_FunctionDef
-                
-                def visit_Name(self, node):
-                    if isinstance(node.ctx, ast.Store):
-                        self.assigns[self.scope][node.id] = node.lineno
-                    elif isinstance(node.ctx, (ast.Load, ast.Del)):
-                        self.usages[self.scope].add(node.id)
-                    self.generic_visit(node)
-            
-            visitor = UsageVisitor()
-            visitor.visit(tree)
-            
-            # Check globals: unused if not used in same file AND not imported by other files
-            for name, line in visitor.assigns["global"].items():
-                # Skip dunder names
-                if name.startswith("__") and name.endswith("__"):
-                    continue
-                # Skip _ prefix (deliberately unused)
-                if name.startswith("_"):
-                    continue
-                # Check usage in global scope
-                if name in visitor.usages["global"]:
-                    continue
-                # Check usage in any local scope within same file
-                used_locally = False
-                for scope, usage_set in visitor.usages.items():
-                    if scope != "global" and name in usage_set:
-                        used_locally = True
-                        break
-                if used_locally:
-                    continue
-                # Check cross-file usage (imported by other files)
-                if name in cross_file_used:
-                    continue
-                
-                unused.append({
-                    "file": fpath.name,
-                    "line": line,
-                    "name": name,
-                    "type": "global_variable"
-                })
-            
-            # Check locals: unused if assigned but never loaded in same scope
-            for scope, assigns in visitor.assigns.items():
-                if scope == "global":
-                    continue
-                usages = visitor.usages.get(scope, set())
-                params = visitor.params.get(scope, set())
-                for name, line in assigns.items():
-                    # Skip parameters
-                    if name in params:
-                        continue
-                    # Skip _ prefix
-                    if name.startswith("_"):
-                        continue
-                    # Skip dunder
-                    if name.startswith("__") and name.endswith("__"):
-                        continue
-                    if name not in usages:
-                        unused.append({
-                            "file": fpath.name,
-                            "line": line,
-                            "name": f"{scope}.{name}",
-                            "type": "local_variable"
-                        })
+            unused.append({
+                "file": file_name,
+                "path": file_path_str,
+                "line": line,
+                "name": name,
+                "type": "global_variable"
+            })
+        
+        # Locals: assigned but never used in the same scope
+        for name, line in summary.get("locals", []):
+            unused.append({
+                "file": file_name,
+                "path": file_path_str,
+                "line": line,
+                "name": name,
+                "type": "local_variable"
+            })
         
         return unused
 
+def _symbol_names(file_path: Path, data: Dict[str, Any]) -> Set[Tuple[str, str]]:
+    """(qualified name, name) of the functions and variables a file defines."""
+    module_name = module_name_for(file_path, data)
+    names = {(qualify(module_name, func["name"], func.get("parent_class"), func.get("param_types")), func["name"])
+             for func in data.get("functions", [])}
+    names.update((qualify(module_name, var["name"]), var["name"]) for var in data.get("variables", []))
+    return names
+
+def _class_shapes(data: Dict[str, Any]) -> List[Tuple]:
+    """Classes without positions or members: what name resolution and the hierarchy depend on."""
+    return [(cls["name"], cls.get("kind"), tuple(cls.get("bases", ()))) for cls in data.get("classes", [])]
+
+def _call_records(data: Dict[str, Any]) -> List[Tuple]:
+    """Per-function call records, for telling whether an edit touched any call."""
+    return [(func["name"], func.get("parent_class"), repr(func.get("calls_detailed", func.get("calls"))))
+            for func in data.get("functions", [])]
@@ -2,31 +2,41 @@
 Structural Parser
 Extracts symbols (functions, classes) and call sites from source code.
 Uses native AST for Python and Tree-sitter for C, C++, and Java.
+Consumes ParsedUnits so the tree built during the syntax check is reused.
 """
 
 import ast
 from pathlib import Path
 from typing import List, Dict, Any, Optional
-import tree_sitter_languages
-from tree_sitter import Parser, Language, Query
+from core.parsed_unit import UnitParser, ParsedUnit
+
+# Local variable declarations checked for unused variables (Tree-sitter languages)
+LOCAL_DECLARATION_TYPES = {
+    'java': ('local_variable_declaration',),
+    'c': ('declaration',),
+    'cpp': ('declaration',),
+}
+
+# Java declarations whose type is known for variables used as call receivers
+JAVA_LOCAL_DECLARATIONS = ('formal_parameter', 'local_variable_declaration', 'catch_formal_parameter',
+                           'enhanced_for_statement', 'resource')
 
 class StructuralParser:
     """Extracts structural information from source files using AST or Tree-sitter."""
 
-    def __init__(self):
-        self.parsers = {}
-        self.languages = {}
+    # Bump whenever the shape or content of parse() output changes (invalidates the parse cache)
+    VERSION = "9"
+
+    def __init__(self, unit_parser: UnitParser = None):
+        self.unit_parser = unit_parser or UnitParser()
+        self.languages = self.unit_parser.languages
         self.queries = {}
         self.queries_usage = {}
+        self.queries_calls = {}
         
-        # Initialize Tree-sitter for non-Python languages
-        for lang_id in ['c', 'cpp', 'java']:
+        # Compile queries for the languages the unit parser could load
+        for lang_id, lang in self.languages.items():
             try:
-                lang = tree_sitter_languages.get_language(lang_id)
-                parser = tree_sitter_languages.get_parser(lang_id)
-                self.languages[lang_id] = lang
-                self.parsers[lang_id] = parser
-                
                 # Pre-compile queries for performance
                 if lang_id == 'c':
                     # Simplified C query
@@ -56,12 +66,19 @@ class StructuralParser:
                       name: (identifier) @name
                     ) @class
                     
+                    (interface_declaration
+                      name: (identifier) @name
+                    ) @class
+                    
+                    (enum_declaration
+                      name: (identifier) @name
+                    ) @class
+                    
                     (declaration) @var
                     (field_declaration) @var
                     """
                 
                 self.queries[lang_id] = lang.query(query_str)
-                self.queries[lang_id] = lang.query(query_str)
                 
                 if lang_id == 'java':
                     # Java uses 'identifier' or 'type_identifier'
@@ -76,37 +93,51 @@ class StructuralParser:
                     (type_identifier) @id
                     (field_identifier) @id
                     """)
+                
+                # Call sites, bucketed into their enclosing functions by byte range
+                if lang_id == 'java':
+                    self.queries_calls[lang_id] = lang.query("""
+                    (method_invocation) @call
+                    (object_creation_expression) @new
+                    """)
+                else:
+                    self.queries_calls[lang_id] = lang.query("(call_expression) @call")
             except Exception as e:
-                print(f"Warning: Failed to initialize Tree-sitter for {lang_id}: {e}")
+                print(f"Warning: Failed to compile Tree-sitter queries for {lang_id}: {e}")
 
     def parse(self, code: str, file_path: Path) -> Dict[str, Any]:
-        """Unified entry point for parsing any supported file."""
-        ext = file_path.suffix.lower()
-        if ext == '.py':
-            return self._parse_python_ast(code, file_path)
-        
-        lang_map = {
-            '.c': 'c',
-            '.cpp': 'cpp',
-            '.cc': 'cpp',
-            '.h': 'c', # Headers can be C or CPP, default to C for simple extract
-            '.hpp': 'cpp',
-            '.java': 'java'
-        }
+        """Unified entry point for parsing any supported source string."""
+        return self.parse_unit(self.unit_parser.parse_source(code, file_path.suffix, file_path))
+
+    def parse_unit(self, unit: ParsedUnit) -> Dict[str, Any]:
+        """Extract structure from an already-parsed unit."""
+        if unit.language == 'python':
+            return self._parse_python_ast(unit.module, unit.code, unit.data)
         
-        lang_id = lang_map.get(ext)
-        if lang_id and lang_id in self.parsers:
-            return self._parse_with_treesitter(code, lang_id)
+        if unit.tree is not None:
+            return self._parse_with_treesitter(unit.tree, unit.code, unit.language)
         
         return {"functions": [], "classes": [], "imports": [], "calls": []}
 
-    def _parse_python_ast(self, code: str, file_path: Path) -> Dict[str, Any]:
-        """Parse Python code using native AST module."""
-        try:
-            tree = ast.parse(code)
-        except SyntaxError:
+    def _parse_python_ast(self, tree: Optional[ast.Module], code: str, data: bytes) -> Dict[str, Any]:
+        """Extract structure from a Python AST (None when the source did not parse)."""
+        if tree is None:
             return {"functions": [], "classes": [], "imports": [], "calls": []}
 
+        # Byte offset of each line start; ast col offsets are already UTF-8 byte offsets
+        line_starts = [0]
+        pos = data.find(b"\n")
+        while pos != -1:
+            line_starts.append(pos + 1)
+            pos = data.find(b"\n", pos + 1)
+
+        def node_span(node) -> List[int]:
+            try:
+                return [line_starts[node.lineno - 1] + node.col_offset,
+                        line_starts[node.end_lineno - 1] + node.end_col_offset]
+            except (AttributeError, IndexError, TypeError):
+                return [0, 0]
+
         all_calls = []
 
         class Analyzer(ast.NodeVisitor):
@@ -119,8 +150,15 @@ class StructuralParser:
                 self.imports = []
                 self.calls_in_current = []
                 self.calls_detailed_in_current = []
+                self.module_calls = []  # calls made outside any function (script code, class bodies)
                 self.variables = []
                 self.identifiers = []
+                # Per-scope assignment/usage tracking for unused-variable detection.
+                # Scopes are keyed by function name; class bodies share the enclosing scope.
+                self.scope_stack = ["global"]
+                self.assigns = {"global": {}}    # scope -> {name: line}
+                self.usages = {"global": set()}  # scope -> names loaded or deleted
+                self.params = {"global": set()}  # scope -> parameter names
 
             def visit_Import(self, node):
                 names = [alias.name for alias in node.names]
@@ -141,12 +179,18 @@ class StructuralParser:
             def visit_Name(self, node):
                 if isinstance(node.ctx, ast.Load):
                     self.identifiers.append(node.id)
+                scope = self.scope_stack[-1]
+                if isinstance(node.ctx, ast.Store):
+                    self.assigns[scope][node.id] = node.lineno
+                elif isinstance(node.ctx, (ast.Load, ast.Del)):
+                    self.usages[scope].add(node.id)
                 self.generic_visit(node)
 
 
             def visit_ImportFrom(self, node):
                 names = [alias.name for alias in node.names]
-                self.imports.append({"module": node.module, "names": names})
+                # level > 0 for relative imports (from . import x, from ..pkg import y)
+                self.imports.append({"module": node.module, "names": names, "level": node.level})
                 self.generic_visit(node)
 
             def visit_ClassDef(self, node):
@@ -161,18 +205,13 @@ class StructuralParser:
                     elif isinstance(base, ast.Attribute):
                         bases.append(base.attr)
                 
-                try:
-                    body_code = ast.get_source_segment(self.source_code, node)
-                except:
-                    body_code = ""
-
                 class_data = {
                     "name": node.name,
                     "line": node.lineno,
                     "methods": [],
                     "attributes": [],
                     "bases": bases,
-                    "body_code": body_code
+                    "span": node_span(node)
                 }
                 
                 for item in node.body:
@@ -188,6 +227,7 @@ class StructuralParser:
             def visit_FunctionDef(self, node):
                 prev_func = self.current_function
                 prev_calls = self.calls_in_current
+                prev_detailed = self.calls_detailed_in_current
                 
                 self.current_function = node.name
                 self.calls_in_current = []
@@ -196,11 +236,6 @@ class StructuralParser:
                 args = [arg.arg for arg in node.args.args]
                 signature = f"{node.name}({', '.join(args)})"
                 
-                try:
-                    body_code = ast.get_source_segment(self.source_code, node)
-                except:
-                    body_code = ""
-
                 # Extract decorator names
                 decorators = []
                 for dec in node.decorator_list:
@@ -214,13 +249,24 @@ class StructuralParser:
                         elif isinstance(dec.func, ast.Attribute):
                             decorators.append(dec.func.attr)
 
+                self.scope_stack.append(node.name)
+                self.assigns[node.name] = {}
+                self.usages[node.name] = set()
+                # Parameters are not reported as unused variables
+                self.params[node.name] = {arg.arg for arg in node.args.args}
+                if node.args.vararg:
+                    self.params[node.name].add(node.args.vararg.arg)
+                if node.args.kwarg:
+                    self.params[node.name].add(node.args.kwarg.arg)
+                
                 self.generic_visit(node)
+                self.scope_stack.pop()
                 
                 func_data = {
                     "name": node.name,
                     "line": node.lineno,
                     "signature": signature,
-                    "body_code": body_code,
+                    "span": node_span(node),
                     "calls": [c["name"] for c in self.calls_detailed_in_current],
                     "calls_detailed": self.calls_detailed_in_current,
                     "parent_class": self.current_class,
@@ -236,12 +282,13 @@ class StructuralParser:
                 
                 self.current_function = prev_func
                 self.calls_in_current = prev_calls
+                self.calls_detailed_in_current = prev_detailed
 
             visit_AsyncFunctionDef = visit_FunctionDef
 
             def visit_Call(self, node):
                 call_name = None
-                receiver = None  # "self", "super", a class name, or None (bare call)
+                receiver = None  # "self", "super", a class/module/variable name, "?" or None (bare call)
                 
                 if isinstance(node.func, ast.Name):
                     call_name = node.func.id
@@ -261,12 +308,17 @@ class StructuralParser:
                         # super().__init__() — val is Call to super
                         if isinstance(val.func, ast.Name) and val.func.id == "super":
                             receiver = "super"
+                        else:
+                            receiver = "?"  # f().method(): receiver type unknown
+                    else:
+                        receiver = "?"  # self.attr.method(), obj[i].method(), ...
                 
                 if call_name:
-                    self.calls_detailed_in_current.append({
-                        "name": call_name,
-                        "receiver": receiver
-                    })
+                    call_info = {"name": call_name, "receiver": receiver}
+                    if self.current_function is None:
+                        self.module_calls.append(call_info)
+                    else:
+                        self.calls_detailed_in_current.append(call_info)
                     all_calls.append(call_name)
                 
                 self.generic_visit(node)
@@ -280,14 +332,44 @@ class StructuralParser:
             "imports": analyzer.imports,
             "calls": all_calls,
             "identifiers": analyzer.identifiers,
-            "variables": analyzer.variables
+            "variables": analyzer.variables,
+            "module_calls": analyzer.module_calls,
+            "unused_candidates": self._python_unused_candidates(analyzer)
         }
 
-    def _parse_with_treesitter(self, code: str, lang_id: str) -> Dict[str, Any]:
+    @staticmethod
+    def _python_unused_candidates(analyzer) -> Dict[str, List]:
+        """
+        Compact per-file unused-variable summary:
+          globals: [name, line] assigned at module level and never used anywhere in
+                   the file (cross-file imports are checked later by the analyzer)
+          locals:  ["function.name", line] assigned in a function and never used there
+        """
+        def ignored(name: str) -> bool:
+            # _ prefix marks deliberately unused names (and covers dunders)
+            return name.startswith("_")
+        
+        all_used = set().union(*analyzer.usages.values())
+        globals_ = [[name, line] for name, line in analyzer.assigns["global"].items()
+                    if not ignored(name) and name not in all_used]
+        
+        locals_ = []
+        for scope, assigns in analyzer.assigns.items():
+            if scope == "global":
+                continue
+            usages = analyzer.usages.get(scope, set())
+            params = analyzer.params.get(scope, set())
+            for name, line in assigns.items():
+                if name not in params and not ignored(name) and name not in usages:
+                    locals_.append([f"{scope}.{name}", line])
+        
+        return {"globals": globals_, "locals": locals_}
+
+    def _parse_with_treesitter(self, tree, code: str, lang_id: str) -> Dict[str, Any]:
         """Extract functions and classes using Tree-sitter queries."""
-        parser = self.parsers[lang_id]
         query = self.queries.get(lang_id)
         usage_query = self.queries_usage.get(lang_id)
+        calls_query = self.queries_calls.get(lang_id)
         
         # Helper to find nodes by field or type
         def find_child_by_type(n, t):
@@ -295,12 +377,157 @@ class StructuralParser:
                 if c.type == t: return c
             return None
 
-        try:
-            tree = parser.parse(bytes(code, "utf8"))
-            root = tree.root_node
-        except Exception as e:
-            print(f"Error parsing with Tree-sitter ({lang_id}): {e}")
-            return {"functions": [], "classes": [], "imports": [], "calls": [], "identifiers": [], "global_vars": []}
+        root = tree.root_node
+
+        def erase(text: str) -> str:
+            # Erase generics and whitespace: Map<K, V>[] -> Map[]
+            depth = 0
+            erased = []
+            for ch in text:
+                if ch == '<':
+                    depth += 1
+                elif ch == '>':
+                    depth -= 1
+                elif depth == 0 and not ch.isspace():
+                    erased.append(ch)
+            return ''.join(erased)
+
+        def java_param_types(n) -> List[str]:
+            params = n.child_by_field_name('parameters')
+            types = []
+            for p in (params.children if params else []):
+                if p.type not in ('formal_parameter', 'spread_parameter'):
+                    continue
+                type_node = p.child_by_field_name('type') or next(
+                    (c for c in p.children if c.type not in ('modifiers', 'identifier', 'variable_declarator')), None)
+                text = erase(type_node.text.decode('utf8')) if type_node else '?'
+                if p.type == 'spread_parameter':
+                    text += '...'
+                types.append(text)
+            return types
+
+        def declarator_name(d):
+            # int *p = ..., a[3], x = 1 -> innermost identifier; skip local prototypes
+            while d is not None and d.type != 'identifier':
+                if d.type == 'function_declarator':
+                    return None
+                d = d.child_by_field_name('declarator') or d.child_by_field_name('name')
+            return d
+
+        def treesitter_unused_locals(func_node, kinds) -> List[tuple]:
+            body = func_node.child_by_field_name('body') or func_node
+            declared = {}       # name -> line
+            declaring = set()   # start bytes of the declaring identifiers
+            references = []     # (name, start byte) of every identifier
+            stack = [body]
+            while stack:
+                n = stack.pop()
+                if n.type in kinds:
+                    for child in n.named_children:
+                        name_node = declarator_name(child) if child.type in (
+                            'variable_declarator', 'init_declarator', 'identifier',
+                            'pointer_declarator', 'array_declarator', 'reference_declarator') else None
+                        if name_node is not None:
+                            name = name_node.text.decode('utf8')
+                            declared.setdefault(name, name_node.start_point[0] + 1)
+                            declaring.add(name_node.start_byte)
+                elif n.type == 'identifier':
+                    references.append((n.text.decode('utf8'), n.start_byte))
+                stack.extend(n.children)
+            if not declared:
+                return []
+            used = {name for name, start in references if start not in declaring}
+            return sorted(
+                ((name, line) for name, line in declared.items()
+                 if name not in used and not name.startswith('_')),
+                key=lambda item: item[1]
+            )
+
+        def java_call_info(n, call_name: str, local_vars: Dict[str, str], fields: Dict[str, str]) -> Dict[str, Any]:
+            """
+            Receiver of a method_invocation: None (implicit this), "self" (this),
+            "super", a class name (static call) or a variable, plus its declared type.
+            """
+            args = n.child_by_field_name('arguments')
+            info = {"name": call_name, "receiver": None, "receiver_type": None,
+                    "argc": len(args.named_children) if args else 0}
+            obj = n.child_by_field_name('object')
+            if obj is None:
+                return info
+            
+            text = obj.text.decode('utf8')
+            if obj.type == 'this':
+                info["receiver"] = "self"
+            elif obj.type == 'super':
+                info["receiver"] = "super"
+            elif obj.type == 'identifier':
+                info["receiver"] = text
+                if text in local_vars:
+                    info["receiver_type"] = local_vars[text]
+                elif text in fields:
+                    info["receiver_type"] = fields[text]
+                elif text[:1].isupper():
+                    info["receiver_type"] = text
+                    info["static"] = True
+            elif obj.type == 'field_access' and obj.child_by_field_name('object') is not None \
+                    and obj.child_by_field_name('object').type == 'this':
+                field = obj.child_by_field_name('field').text.decode('utf8')
+                info["receiver"] = text
+                info["receiver_type"] = fields.get(field)
+            elif obj.type == 'object_creation_expression':
+                type_node = obj.child_by_field_name('type')
+                info["receiver"] = "new"
+                info["receiver_type"] = erase(type_node.text.decode('utf8')) if type_node else None
+            else:
+                info["receiver"] = "?"  # Chained call or other expression: type unknown
+            return info
+
+        def java_modifiers(n) -> tuple:
+            """(annotation simple names, modifier keywords) of a declaration."""
+            annotations, keywords = [], []
+            modifiers = find_child_by_type(n, 'modifiers')
+            for child in (modifiers.children if modifiers else []):
+                if child.type in ('marker_annotation', 'annotation'):
+                    name_node = child.child_by_field_name('name')
+                    if name_node is not None:
+                        annotations.append(name_node.text.decode('utf8').rsplit('.', 1)[-1])
+                elif child.type.isalpha():
+                    keywords.append(child.type)
+            return annotations, keywords
+
+        def java_supertypes(n) -> List[str]:
+            """Superclass followed by implemented / extended interfaces."""
+            bases = []
+            for child in n.children:
+                if child.type == 'superclass':
+                    bases.extend(erase(c.text.decode('utf8')) for c in child.named_children)
+                elif child.type in ('super_interfaces', 'extends_interfaces'):
+                    for type_list in child.named_children:
+                        bases.extend(erase(c.text.decode('utf8')) for c in type_list.named_children)
+            return bases
+
+        def java_declared_types(n, kinds) -> Dict[str, str]:
+            """Variable name -> erased declared type for declarations of `kinds` under n."""
+            types = {}
+            stack = [n]
+            while stack:
+                cur = stack.pop()
+                if cur.type in kinds:
+                    type_node = cur.child_by_field_name('type')
+                    if type_node is not None:
+                        type_name = erase(type_node.text.decode('utf8'))
+                        name_node = cur.child_by_field_name('name')
+                        if name_node is not None:
+                            types[name_node.text.decode('utf8')] = type_name
+                        for decl in cur.named_children:
+                            if decl.type == 'variable_declarator':
+                                decl_name = decl.child_by_field_name('name')
+                                if decl_name is not None:
+                                    types[decl_name.text.decode('utf8')] = type_name
+                # Don't descend into nested types; their members are tracked separately
+                if cur is n or cur.type not in ('class_declaration', 'interface_declaration', 'enum_declaration'):
+                    stack.extend(cur.children)
+            return types
 
         results = {
             "functions": [],
@@ -308,7 +535,8 @@ class StructuralParser:
             "imports": [],
             "calls": [],
             "identifiers": [],
-            "global_vars": []
+            "global_vars": [],
+            "package": ""
         }
 
         if not query:
@@ -316,20 +544,38 @@ class StructuralParser:
 
         captures = query.captures(root)
         
-        # We need to track which node belongs to which class
-        # (Simplified: functions/methods following a class but before next class)
-        current_class = None
+        # Captures arrive in document order. Classes whose byte range is still
+        # open are kept on a stack, so a function belongs to the innermost class
+        # that contains it and nested classes are named Outer.Inner.
+        open_classes = []  # (class node, index into results["classes"])
+        func_nodes = []  # parallel to results["functions"]
+        field_types = {}  # Java: class name -> {field: declared type}
 
         for node, tag in captures:
+            if tag not in ('class', 'func'):
+                continue
+            while open_classes and open_classes[-1][0].end_byte <= node.start_byte:
+                open_classes.pop()
+            current_class = results["classes"][open_classes[-1][1]]["name"] if open_classes else None
+            
             if tag == 'class':
-                current_class = node.child_by_field_name('name').text.decode('utf8')
-                results["classes"].append({
-                    "name": current_class,
+                class_name = node.child_by_field_name('name').text.decode('utf8')
+                if current_class:
+                    class_name = f"{current_class}.{class_name}"
+                class_data = {
+                    "name": class_name,
                     "line": node.start_point[0] + 1,
                     "methods": [],
                     "attributes": [],
-                    "body_code": code[node.start_byte:node.end_byte]
-                })
+                    "span": [node.start_byte, node.end_byte]
+                }
+                if lang_id == 'java':
+                    class_data["kind"] = node.type.replace('_declaration', '')
+                    class_data["bases"] = java_supertypes(node)
+                    body = node.child_by_field_name('body')
+                    field_types[class_name] = java_declared_types(body, ('field_declaration',)) if body else {}
+                open_classes.append((node, len(results["classes"])))
+                results["classes"].append(class_data)
             
             elif tag == 'func':
                 # Helper to recursive find name
@@ -378,17 +624,25 @@ class StructuralParser:
                 params_str = sig_parts[0] if sig_parts else '()'
                 signature = f"{return_type + ' ' if return_type else ''}{name}{params_str}"
                 
-                results["functions"].append({
+                func_nodes.append(node)
+                func_data = {
                     "name": name,
                     "line": node.start_point[0] + 1,
                     "signature": signature,
-                    "body_code": code[node.start_byte:node.end_byte],
+                    "span": [node.start_byte, node.end_byte],
                     "calls": [],
                     "parent_class": current_class
-                })
+                }
+                if lang_id == 'java':
+                    # Erased parameter types distinguish overloads in qualified names
+                    func_data["param_types"] = java_param_types(node)
+                    func_data["calls_detailed"] = []
+                    # Entry-point detection (JUnit / Spring annotations, public API)
+                    func_data["annotations"], func_data["modifiers"] = java_modifiers(node)
+                results["functions"].append(func_data)
                 
                 if current_class:
-                    results["classes"][-1]["methods"].append(name)
+                    results["classes"][open_classes[-1][1]]["methods"].append(name)
 
         # ── Tree-sitter: Extract imports, globals, and call sites ──
         
@@ -410,11 +664,11 @@ class StructuralParser:
                     "module": child.text.decode('utf8').strip(),
                     "names": []
                 })
-            elif child.type == 'package_declaration':  # Java package
-                results["imports"].append({
-                    "module": child.text.decode('utf8').strip(),
-                    "names": []
-                })
+            elif child.type == 'package_declaration':  # Java package (not an import)
+                for part in child.children:
+                    if part.type in ('scoped_identifier', 'identifier'):
+                        results["package"] = part.text.decode('utf8')
+                        break
             
             # Global declarations (#define, top-level variables)
             elif child.type == 'preproc_def':  # #define
@@ -426,35 +680,74 @@ class StructuralParser:
                     results["global_vars"] = []
                 results["global_vars"].append(child.text.decode('utf8').strip())
         
-        # 2. Extract call sites from each function body
-        def extract_calls(node):
-            """Recursively find call_expression nodes."""
-            calls = []
-            if node.type == 'call_expression':
-                func_node = node.child_by_field_name('function')
-                if func_node:
+        # 2. Assign call sites to their enclosing functions in one sweep.
+        #    Call captures arrive in document order; functions are visited by start
+        #    byte and kept on a stack of currently-open (nested) ranges, so every
+        #    call is attributed to each function that contains it.
+        #    Java also records receiver types (for class-hierarchy call resolution)
+        #    and the types instantiated with `new` anywhere in the file.
+        if calls_query:
+            order = sorted(range(len(func_nodes)), key=lambda i: func_nodes[i].start_byte)
+            open_funcs = []
+            next_func = 0
+            local_types = {}  # Java: function index -> {variable: declared type}
+            instantiated = set()
+            
+            for node, tag in calls_query.captures(root):
+                if tag == 'new':
+                    type_node = node.child_by_field_name('type')
+                    if type_node is not None:
+                        instantiated.add(erase(type_node.text.decode('utf8')))
+                    continue
+                pos = node.start_byte
+                while next_func < len(order) and func_nodes[order[next_func]].start_byte <= pos:
+                    idx = order[next_func]
+                    while open_funcs and func_nodes[open_funcs[-1]].end_byte <= func_nodes[idx].start_byte:
+                        open_funcs.pop()
+                    open_funcs.append(idx)
+                    next_func += 1
+                while open_funcs and func_nodes[open_funcs[-1]].end_byte <= pos:
+                    open_funcs.pop()
+                if not open_funcs:
+                    continue
+                
+                if node.type == 'method_invocation':  # Java specific
+                    name_node = node.child_by_field_name('name')
+                    if not name_node:
+                        continue
+                    call_name = name_node.text.decode('utf8')
+                    
+                    idx = open_funcs[-1]
+                    if idx not in local_types:
+                        local_types[idx] = java_declared_types(func_nodes[idx], JAVA_LOCAL_DECLARATIONS)
+                    fields = field_types.get(results["functions"][idx]["parent_class"], {})
+                    call_info = java_call_info(node, call_name, local_types[idx], fields)
+                    results["functions"][idx]["calls_detailed"].append(call_info)
+                else:
+                    func_node = node.child_by_field_name('function')
+                    if not func_node:
+                        continue
                     call_name = func_node.text.decode('utf8')
                     # Simplify: take last part of dotted names (e.g. System.out.println -> println)
                     if '.' in call_name:
                         call_name = call_name.split('.')[-1]
                     if '::' in call_name:
                         call_name = call_name.split('::')[-1]
-                    calls.append(call_name)
-            elif node.type == 'method_invocation': # Java specific
-                name_node = node.child_by_field_name('name')
-                if name_node:
-                    calls.append(name_node.text.decode('utf8'))
-            for child in node.children:
-                calls.extend(extract_calls(child))
-            return calls
-        
-        for func in results["functions"]:
-            # Re-parse the function body to find call sites
-            func_line = func["line"] - 1  # 0-indexed
-            for node, tag in captures:
-                if tag == 'func' and node.start_point[0] == func_line:
-                    func["calls"] = extract_calls(node)
-                    break
+                
+                for idx in open_funcs:
+                    results["functions"][idx]["calls"].append(call_name)
+            
+            if lang_id == 'java':
+                results["instantiations"] = sorted(instantiated)
+
+        # 3. Unused locals: declared in a function body and never referenced again there
+        local_kinds = LOCAL_DECLARATION_TYPES.get(lang_id, ())
+        unused_locals = []
+        for idx, func_node in enumerate(func_nodes):
+            func_name = results["functions"][idx]["name"]
+            for var_name, line in treesitter_unused_locals(func_node, local_kinds):
+                unused_locals.append([f"{func_name}.{var_name}", line])
+        results["unused_candidates"] = {"globals": [], "locals": unused_locals}
 
         if usage_query:
             captures_usage = usage_query.captures(root)
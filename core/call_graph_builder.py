@@ -1,115 +1,446 @@
 """
 Call Graph Builder
-Constructs function call graph and file dependency graph using NetworkX.
+Constructs function call graph and file dependency graph.
+Both are CSR graphs (core.graph) over dense integer IDs: symbol IDs for
+functions and FileTable IDs for files. Qualified names and paths are only
+used at the API boundary. Java virtual calls are resolved through the class
+hierarchy (CHA, optionally pruned to instantiated types: RTA).
 """
 
 from pathlib import Path
-from typing import Dict, List, Set, Tuple
-import networkx as nx
-from core.symbol_table import Symbol, SymbolTableBuilder
+from typing import Dict, Iterable, List, Optional, Set, Tuple
+from core.graph import CSRGraph, GraphBuilder, OverlayGraph
+from core.module_index import ModuleIndex
+from core.class_hierarchy import ClassHierarchy
+from core.symbol_table import Symbol, SymbolTableBuilder, module_name_for, qualify, strip_overload
+
+class ResolutionContext:
+    """
+    Name scope of one file, built once from its parser output:
+    imported names (-> source module) and the base classes of classes defined here.
+    """
+
+    __slots__ = ("file_id", "imports", "class_bases")
+
+    def __init__(self, file_id: int, data: dict):
+        self.file_id = file_id
+        self.imports: Dict[str, str] = {}  # local name -> module (last dotted component)
+        self.class_bases: Dict[str, List[str]] = {}
+
+        for imp in data.get("imports", []):
+            module = imp.get("module")
+            for name in imp.get("names", []):
+                if module:
+                    # from pkg.module import name
+                    self.imports[name] = module.rsplit(".", 1)[-1]
+                else:
+                    # import pkg.module -> referenced as pkg.module.x, receiver "pkg"
+                    self.imports[name.split(".", 1)[0]] = name.rsplit(".", 1)[-1]
+        for cls in data.get("classes", []):
+            self.class_bases[cls["name"]] = cls.get("bases", [])
 
 class CallGraphBuilder:
     """
     Builds directed graph of function calls across the codebase.
     """
     
-    def __init__(self, symbol_table: SymbolTableBuilder):
+    JAVA_DISPATCH_MODES = ("rta", "cha", "name")
+
+    def __init__(self, symbol_table: SymbolTableBuilder, module_index: ModuleIndex = None,
+                 java_dispatch: str = "rta"):
         self.symbol_table = symbol_table
-        self.function_graph = nx.DiGraph()  # Function -> Function calls
-        self.file_graph = nx.DiGraph()       # File -> File dependencies
-        self.call_sites: Dict[str, List[str]] = {}  # function -> list of functions it calls
+        self.files = symbol_table.files
+        # Built from parsed_files on first use unless a (possibly cached) index is supplied
+        self.module_index = module_index
+        # "rta", "cha", or "name" (legacy name matching only)
+        if java_dispatch not in self.JAVA_DISPATCH_MODES:
+            raise ValueError(f"Unknown Java dispatch mode: {java_dispatch}")
+        self.java_dispatch = java_dispatch
+        self.hierarchy = ClassHierarchy()
+        # Function -> Function calls; add_file() edges stay in the overlay, see function_graph
+        self.calls = OverlayGraph()
+        self.file_graph = CSRGraph.empty()      # File -> File dependencies
+        self.call_sites: Dict[int, List[str]] = {}  # function ID -> list of call names it makes
+        self.contexts: Dict[int, ResolutionContext] = {}  # file ID -> name scope
+        self.module_entries: Dict[int, List[int]] = {}  # file ID -> functions called at module level
+        # file ID -> (caller ID, method name) for calls on receivers of unknown type (obj.method());
+        # they may reach any method of that name, see dynamic_call_edges()
+        self.dynamic_calls: Dict[int, List[Tuple[int, str]]] = {}
+        # Called names and base class names -> IDs of the files that use them
+        self.referenced_names: Dict[str, Set[int]] = {}
+        self._file_names: Dict[int, Set[str]] = {}
+        # file ID -> {(call name, receiver, class) -> symbol ID}; class is the caller's
+        # class for self/super calls and Java/C++ bare calls, None otherwise
+        self._resolved: Dict[int, Dict[tuple, int]] = {}
+        # Java hierarchy lookups: (name, static type, virtual, argc, implicit this) -> symbol IDs
+        self._java_resolved: Dict[tuple, Optional[Tuple[int, ...]]] = {}
+        self.resolution_hits = 0
+        self.resolution_misses = 0
+    
+    @property
+    def function_graph(self) -> CSRGraph:
+        """
+        Function -> Function calls as a plain CSRGraph, for whole-graph queries.
+        Edges added by add_file() are merged in on first use; incremental code
+        reads `calls` instead, which never rebuilds.
+        """
+        return self.calls.freeze(self.symbol_table.id_capacity)
     
     def build_call_graph(self, parsed_files: Dict[Path, dict]):
         """
         Build call graph and file dependency graph from parsed file data.
         """
-        # Phase 1: Add all function nodes
-        for qualified_name, symbol in self.symbol_table.symbols.items():
-            self.function_graph.add_node(qualified_name, symbol=symbol)
+        self._resolved.clear()
+        self._java_resolved.clear()
+        self.module_entries.clear()
+        self.call_sites.clear()
+        self.contexts.clear()
+        self.dynamic_calls.clear()
+        self.referenced_names.clear()
+        self._file_names.clear()
+        self.resolution_hits = self.resolution_misses = 0
+        
+        # Phase 1: Size the function graph by symbol ID
+        functions = GraphBuilder(self.symbol_table.id_capacity)
+        
+        if self.module_index is None:
+            self.module_index = ModuleIndex(self.files)
+            self.module_index.build(parsed_files)
+        
+        for other_path, data in parsed_files.items():
+            file_id = self.files.id_of(other_path)
+            self.contexts[file_id] = ResolutionContext(file_id, data)
+        
+        self.hierarchy = ClassHierarchy()
+        if self.java_dispatch != "name":
+            self.hierarchy.build(parsed_files)
         
         # Phase 2: Add call edges (Function -> Function)
         for file_path, data in parsed_files.items():
-            for func_data in data.get("functions", []):
-                caller = func_data.get("qualified_name")
-                calls = func_data.get("calls", [])
-                
-                if caller:
-                    self.call_sites[caller] = calls
-                    for call_name in calls:
-                        callee = self._resolve_call(call_name, file_path)
-                        if callee and callee in self.symbol_table.symbols:
-                            self.function_graph.add_edge(caller, callee)
+            for caller, callee in self._resolve_file(file_path, data):
+                functions.add_edge(caller, callee)
+        self.calls = OverlayGraph(functions.build())
+        
+        # Phases 3-4: File dependency graph
+        self.link_files(parsed_files)
+    
+    def add_file(self, file_path: Path, data: dict) -> List[Tuple[int, int]]:
+        """
+        Resolve the calls of one new or edited file against the current symbol
+        table and return its call edges. Edges are only ever added, so this is
+        for files that gained calls; symbols must keep their IDs (see
+        SymbolTableBuilder.remove_file) and the file graph is left to link_files().
+        """
+        file_id = self.files.id_of(file_path)
+        self._resolved.pop(file_id, None)
+        self.contexts[file_id] = ResolutionContext(file_id, data)
+        edges = self._resolve_file(file_path, data)
+        for source, target in edges:
+            self.calls.add_edge(source, target)
+        return edges
+    
+    def referenced_from(self, name: str) -> Set[int]:
+        """IDs of the files that call `name` or derive a class from it."""
+        return self.referenced_names.get(name, set())
+    
+    def _resolve_file(self, file_path: Path, data: dict) -> List[Tuple[int, int]]:
+        """Call edges of one file; also records its call sites, dynamic calls, module entries and names."""
+        module_name = module_name_for(file_path, data)
+        caller_file = self.files.id_of(file_path)
+        context = self.contexts[caller_file]
+        edges = []
+        dynamic_calls = []
+        names = set(base for bases in context.class_bases.values() for base in bases)
+        for func_data in data.get("functions", []):
+            qualified_name = func_data.get("qualified_name")
+            if not qualified_name and func_data.get("name"):
+                qualified_name = qualify(module_name, func_data["name"], func_data.get("parent_class"),
+                                         func_data.get("param_types"))
+            caller = self.symbol_table.id_of(qualified_name or "")
+            calls = func_data.get("calls", [])
             
-            # Phase 3: Add import edges (File -> File) directly from parser data
-            caller_file = str(file_path)
-            if not self.file_graph.has_node(caller_file):
-                self.file_graph.add_node(caller_file)
+            if caller >= 0:
+                self.call_sites[caller] = calls
+                caller_symbol = self.symbol_table.get_by_id(caller)
+                # Receiver-aware call records where the parser provides them (Python)
+                detailed = func_data.get("calls_detailed")
+                if detailed is None:
+                    detailed = [{"name": call_name, "receiver": None} for call_name in calls]
+                is_java = file_path.suffix.lower() == '.java' and self.java_dispatch != "name"
+                for call_info in detailed:
+                    names.add(call_info["name"])
+                    callees = self._resolve_java_call(call_info, file_path, caller_symbol) if is_java else None
+                    if callees is None:
+                        receiver = call_info.get("receiver")
+                        callee = self._resolve_call(call_info["name"], file_path, receiver, caller_symbol)
+                        callees = (callee,) if callee >= 0 else ()
+                        if callee >= 0 and self._is_dynamic(receiver, callee, context):
+                            dynamic_calls.append((caller, call_info["name"]))
+                    for callee in callees:
+                        edges.append((caller, callee))
+        
+        # Module-level calls (scripts, `if __name__ == "__main__":`) are roots for reachability
+        module_callees = []
+        for call_info in data.get("module_calls", []):
+            names.add(call_info["name"])
+            callee = self._resolve_call(call_info["name"], file_path, call_info.get("receiver"))
+            if callee >= 0:
+                module_callees.append(callee)
+        self._set_file_records(caller_file, module_callees, dynamic_calls, names)
+        return edges
+    
+    def _set_file_records(self, file_id: int, module_callees: List[int], dynamic_calls: List[Tuple[int, str]],
+                          names: Set[str]):
+        for table, records in ((self.module_entries, module_callees), (self.dynamic_calls, dynamic_calls)):
+            if records:
+                table[file_id] = records
+            else:
+                table.pop(file_id, None)
+        for name in self._file_names.get(file_id, ()):
+            users = self.referenced_names.get(name)
+            if users is not None:
+                users.discard(file_id)
+                if not users:
+                    del self.referenced_names[name]
+        for name in names:
+            self.referenced_names.setdefault(name, set()).add(file_id)
+        self._file_names[file_id] = names
+    
+    def link_files(self, parsed_files: Dict[Path, dict]):
+        """(Re)build the file dependency graph from import records and the function call graph."""
+        file_edges = GraphBuilder(len(self.files))
+        
+        # Phase 3: Add import edges (File -> File) directly from parser data
+        for file_path, data in parsed_files.items():
+            caller_file = self.files.id_of(file_path)
+            file_edges.add_node(caller_file)
                 
+            # One index lookup per imported module / class / header
             for imp in data.get("imports", []):
-                # Handle 'from module import names'
-                if imp.get("module"):
-                    module_name = imp["module"]
-                    # Find file corresponding to this module
-                    # (Simple heuristic: module name matches filename)
-                    for other_path in parsed_files.keys():
-                        if other_path.stem == module_name:
-                            self.file_graph.add_edge(caller_file, str(other_path))
-                
-                # Handle 'import name'
-                for name in imp.get("names", []):
-                    for other_path in parsed_files.keys():
-                        if other_path.stem == name:
-                            self.file_graph.add_edge(caller_file, str(other_path))
+                for other_file in self.module_index.resolve(imp, file_path):
+                    if other_file != caller_file:
+                        file_edges.add_edge(caller_file, other_file)
         
         # Phase 4: Build file dependency graph from function calls as well
-        self._build_file_graph()
+        self._build_file_graph(file_edges)
+        self.file_graph = file_edges.build()
     
-    def _resolve_call(self, call_name: str, current_file: Path) -> str:
+    def _resolve_call(self, call_name: str, current_file: Path, receiver: str = None,
+                      caller: Symbol = None) -> int:
         """
-        Resolve a function call to its qualified name.
-        Simple heuristic: check if exact match exists in symbol table.
+        Resolve a function call to a symbol ID (-1 if unresolved).
+        Results are memoized per calling file and (name, receiver), so a common
+        name is resolved once per file (or class, for self/super calls and for
+        Java/C++ bare calls, which resolve through the implicit this).
         """
-        # Try exact match first
-        if call_name in self.symbol_table.symbols:
-            return call_name
+        file_id = self.files.id_of(current_file)
+        if caller is not None and caller.parent_name and (
+                receiver in ("self", "super") or
+                (receiver is None and current_file.suffix.lower() != '.py')):
+            scope = caller.parent_name
+        else:
+            scope = None
+        
+        memo = self._resolved.get(file_id)
+        if memo is None:
+            memo = self._resolved[file_id] = {}
+        key = (call_name, receiver, scope)
+        callee = memo.get(key)
+        if callee is not None:
+            self.resolution_hits += 1
+            return callee
+        
+        self.resolution_misses += 1
+        callee = self._resolve_uncached(call_name, file_id, receiver, caller)
+        memo[key] = callee
+        return callee
+    
+    def _resolve_uncached(self, call_name: str, file_id: int, receiver: str, caller: Symbol) -> int:
+        # Try exact match first (qualified name, or an FQN covering its overloads)
+        symbol = self.symbol_table.get_symbol(call_name)
+        if symbol is not None:
+            return symbol.id
+        overloads = self.symbol_table.find_symbols_by_fqn(call_name)
+        if overloads:
+            return overloads[0].id
+        
+        # Java/C++ bare calls inside a class: implicit this -> caller's class first
+        if (receiver is None and caller is not None and caller.parent_name
+                and caller.file.suffix.lower() != '.py'):
+            class_fqn = strip_overload(caller.qualified_name).rsplit(".", 1)[0]
+            overloads = self.symbol_table.find_symbols_by_fqn(f"{class_fqn}.{call_name}")
+            if overloads:
+                return overloads[0].id
         
-        # Try matching by name only (find in same file first)
         candidates = self.symbol_table.find_symbols_by_name(call_name)
+        if not candidates:
+            return -1
+        context = self.contexts.get(file_id)
+        
+        if receiver in ("self", "super") and caller is not None and caller.parent_name:
+            # self.method() -> the caller's class; super().method() -> its bases
+            if receiver == "self":
+                classes = [caller.parent_name]
+            else:
+                classes = context.class_bases.get(caller.parent_name, []) if context else []
+            for class_name in classes:
+                same_file = None
+                for candidate in candidates:
+                    if candidate.parent_name == class_name:
+                        if candidate.file_id == file_id:
+                            return candidate.id
+                        same_file = same_file or candidate
+                if same_file is not None:
+                    return same_file.id
+        
+        elif receiver is not None:
+            # ClassName.method()
+            for candidate in candidates:
+                if candidate.parent_name == receiver:
+                    return candidate.id
+            # module.func() for an imported module
+            module = context.imports.get(receiver) if context else None
+            if module:
+                for candidate in candidates:
+                    if not candidate.parent_name and candidate.file.stem == module:
+                        return candidate.id
         
         # Prefer symbols in same file
         for candidate in candidates:
-            if candidate.file == current_file:
-                return candidate.qualified_name
+            if candidate.file_id == file_id:
+                return candidate.id
+        
+        # Then the module the name was imported from
+        module = context.imports.get(call_name) if context else None
+        if module:
+            for candidate in candidates:
+                if candidate.file.stem == module:
+                    return candidate.id
         
         # Return first match if any
-        if candidates:
-            return candidates[0].qualified_name
+        return candidates[0].id
+    
+    def _is_dynamic(self, receiver: Optional[str], callee: int, context: ResolutionContext) -> bool:
+        """True if the receiver is an object whose type the name-based resolution cannot know."""
+        if receiver is None or receiver in ("self", "super"):
+            return False
+        if receiver in context.imports:
+            return False  # module.func()
+        return self.symbol_table.get_by_id(callee).parent_name != receiver  # not ClassName.method()
+    
+    def dynamic_call_edges(self, calls: Iterable[Tuple[int, str]] = None) -> List[Tuple[int, int]]:
+        """
+        Conservative edges for dynamic calls: caller -> every method with the called name.
+        Too coarse for the call graph itself, but needed so reachability does not
+        report methods called through untyped receivers as dead.
+        `calls` defaults to every recorded (caller ID, name) dynamic call.
+        """
+        if calls is None:
+            calls = [call for file_calls in self.dynamic_calls.values() for call in file_calls]
+        methods: Dict[str, List[int]] = {}
+        edges = []
+        for caller, name in calls:
+            targets = methods.get(name)
+            if targets is None:
+                targets = methods[name] = [s.id for s in self.symbol_table.find_symbols_by_name(name)
+                                           if s.parent_name]
+            edges.extend((caller, target) for target in targets)
+        return edges
+    
+    def _resolve_java_call(self, call_info: dict, file_path: Path, caller: Symbol) -> Optional[Tuple[int, ...]]:
+        """
+        Resolve a Java method invocation through the class hierarchy.
+        Returns the target symbol IDs (several for a virtual call), () when the
+        receiver is a type outside the analyzed code, or None when the receiver
+        type is unknown and name-based resolution should be used instead.
+        """
+        name = call_info["name"]
+        receiver = call_info.get("receiver")
+        hierarchy = self.hierarchy
+        caller_class = strip_overload(caller.qualified_name).rsplit(".", 1)[0] if caller.parent_name else None
         
-        return None
+        if receiver is None or receiver == "self":
+            static_type, virtual = caller_class, True
+            if static_type not in hierarchy.kinds:
+                return None
+        elif receiver == "super":
+            static_type, virtual = hierarchy.superclass_of(caller_class) if caller_class else None, False
+            if static_type is None:
+                return ()
+        elif call_info.get("receiver_type"):
+            static_type = hierarchy.resolve_type(call_info["receiver_type"], str(file_path))
+            if static_type is None:
+                return ()  # JDK / library type
+            virtual = not call_info.get("static")
+        else:
+            return None
+        
+        argc = call_info.get("argc", -1)
+        key = (name, static_type, virtual, argc, receiver is None)
+        if key in self._java_resolved:
+            self.resolution_hits += 1
+            return self._java_resolved[key]
+        self.resolution_misses += 1
+        
+        if virtual:
+            types = hierarchy.dispatch_targets(static_type, name, rta=self.java_dispatch == "rta")
+        else:
+            declaring = hierarchy.declaring_type(static_type, name)
+            types = [declaring] if declaring else []
+        
+        if not types and receiver is None:
+            # e.g. an outer-class method called from an inner class
+            callees = None
+        else:
+            ids = []
+            for type_fqn in types:
+                ids.extend(symbol.id for symbol in _match_arity(
+                    self.symbol_table.find_symbols_by_fqn(f"{type_fqn}.{name}"), argc))
+            callees = tuple(ids)
+        self._java_resolved[key] = callees
+        return callees
+    
+    def resolution_stats(self) -> Dict[str, float]:
+        total = self.resolution_hits + self.resolution_misses
+        return {
+            "hits": self.resolution_hits,
+            "misses": self.resolution_misses,
+            "hit_rate": self.resolution_hits / total if total else 0.0,
+            "cached_entries": sum(map(len, self._resolved.values())) + len(self._java_resolved),
+        }
     
-    def _build_file_graph(self):
-        """Build file dependency graph from function call graph."""
-        for caller, callee in self.function_graph.edges():
-            caller_symbol = self.symbol_table.get_symbol(caller)
-            callee_symbol = self.symbol_table.get_symbol(callee)
+    def _build_file_graph(self, file_edges: GraphBuilder):
+        """Add file dependency edges implied by the function call graph."""
+        for caller, callee in self.calls.edges():
+            caller_symbol = self.symbol_table.get_by_id(caller)
+            callee_symbol = self.symbol_table.get_by_id(callee)
             
-            if caller_symbol and callee_symbol:
-                caller_file = str(caller_symbol.file)
-                callee_file = str(callee_symbol.file)
-                
-                if caller_file != callee_file:
-                    self.file_graph.add_edge(caller_file, callee_file)
+            if caller_symbol and callee_symbol and caller_symbol.file_id != callee_symbol.file_id:
+                file_edges.add_edge(caller_symbol.file_id, callee_symbol.file_id)
     
-    def find_circular_dependencies(self) -> List[List[str]]:
+    def find_circular_dependencies(self, max_cycles_per_scc: int = 3) -> List[List[str]]:
         """
         Detect circular dependencies in file graph.
-        Returns list of cycles (each cycle is a list of file paths).
+        Returns up to `max_cycles_per_scc` shortest cycles (lists of file paths)
+        for every strongly connected group of files; linear in the graph size.
         """
-        try:
-            cycles = list(nx.simple_cycles(self.file_graph))
-            return cycles
-        except:
-            return []
+        cycles = []
+        for group in self.find_dependency_groups(max_cycles_per_scc):
+            cycles.extend(group["cycles"])
+        return cycles
+    
+    def find_dependency_groups(self, max_cycles_per_scc: int = 3) -> List[Dict[str, List]]:
+        """Strongly connected groups of files, each with its representative cycles."""
+        def path(fid: int) -> str:
+            return str(self.files.path_of(fid))
+        
+        groups = []
+        for component, cycles in self.file_graph.representative_cycles(max_cycles_per_scc):
+            groups.append({
+                "files": [path(fid) for fid in component],
+                "cycles": [[path(fid) for fid in cycle] for cycle in cycles],
+            })
+        return groups
     
     def find_dead_code(self, entry_points: List[str] = None) -> List[Symbol]:
         """
@@ -119,36 +450,42 @@ class CallGraphBuilder:
             entry_points: List of qualified function names (e.g., ["main.main"])
                          If None, finds functions with no incoming edges
         """
+        graph = self.function_graph
+        live = [symbol.id for symbol in self.symbol_table.symbols.values()]
+        
         if entry_points:
-            # Find all reachable functions from entry points
-            reachable = set()
-            for entry in entry_points:
-                if entry in self.function_graph:
-                    reachable.add(entry)
-                    reachable.update(nx.descendants(self.function_graph, entry))
-            
-            # Dead code = all functions - reachable
-            all_functions = set(self.function_graph.nodes())
-            dead = all_functions - reachable
+            # Mark everything reachable from the entry points
+            entries = [sid for sid in map(self.symbol_table.id_of, entry_points) if sid in graph]
+            reachable = graph.reachable(entries)
+            dead = [sid for sid in live if sid not in graph or not reachable[sid]]
         else:
             # Simple heuristic: functions with no incoming edges (except entry points)
-            dead = set()
-            for node in self.function_graph.nodes():
-                if self.function_graph.in_degree(node) == 0:
+            dead = []
+            for sid in live:
+                if sid not in graph or graph.in_degree(sid) == 0:
                     # Check if it's not a common entry point name
-                    symbol = self.symbol_table.get_symbol(node)
-                    if symbol and symbol.name not in {'main', '__main__', 'run', 'start'}:
-                        dead.add(node)
+                    symbol = self.symbol_table.get_by_id(sid)
+                    if symbol.name not in {'main', '__main__', 'run', 'start'}:
+                        dead.append(sid)
         
         # Convert to Symbol objects
-        return [self.symbol_table.get_symbol(qname) for qname in dead 
-                if self.symbol_table.get_symbol(qname)]
+        return [self.symbol_table.get_by_id(sid) for sid in dead]
     
     def get_call_chain(self, from_func: str, to_func: str) -> List[str]:
-        """Get shortest call chain between two functions."""
-        try:
-            if nx.has_path(self.function_graph, from_func, to_func):
-                return nx.shortest_path(self.function_graph, from_func, to_func)
-        except:
-            pass
-        return []
+        """Get shortest call chain between two functions (qualified names in, qualified names out)."""
+        path = self.function_graph.shortest_path(self.symbol_table.id_of(from_func),
+                                                 self.symbol_table.id_of(to_func))
+        return [self.symbol_table.get_by_id(sid).qualified_name for sid in path]
+
+def _match_arity(overloads: List[Symbol], argc: int) -> List[Symbol]:
+    """Overloads whose parameter count fits the call; all of them if none does."""
+    if argc < 0 or len(overloads) < 2:
+        return overloads
+    matching = []
+    for symbol in overloads:
+        qn = symbol.qualified_name
+        params = qn[qn.find("(") + 1:-1] if "(" in qn else ""
+        count = len(params.split(",")) if params else 0
+        if count == argc or (params.endswith("...") and argc >= count - 1):
+            matching.append(symbol)
+    return matching or overloads
@@ -0,0 +1,172 @@
+"""
+Class Hierarchy
+Java type hierarchy (classes, interfaces, enums) keyed by fully qualified name,
+used to resolve virtual calls:
+  - CHA (class hierarchy analysis): a call on static type T may dispatch to the
+    implementation in T or any subtype of T.
+  - RTA (rapid type analysis): as CHA, but only subtypes that are instantiated
+    somewhere in the codebase (`new S(...)`) are considered.
+Simple type names are resolved per file through explicit imports, the file's
+own package and on-demand (wildcard) imports, in that order.
+"""
+
+from pathlib import Path
+from typing import Dict, List, Optional, Set, Tuple
+
+class TypeScope:
+    """How simple type names resolve inside one Java file."""
+
+    __slots__ = ("package", "single", "on_demand", "nested")
+
+    def __init__(self, package: str, imports: List[dict]):
+        self.package = package
+        self.single: Dict[str, str] = {}  # simple name -> FQN
+        self.on_demand: List[str] = []    # packages imported with .*
+        self.nested: Dict[str, str] = {}  # simple name -> FQN of member types declared in this file
+        for imp in imports:
+            text = (imp.get("module") or "").strip().rstrip(";").strip()
+            if not text.startswith("import ") or text.startswith("import static "):
+                continue
+            name = text[len("import "):].replace(" ", "")
+            if name.endswith(".*"):
+                self.on_demand.append(name[:-2])
+            else:
+                self.single[name.rsplit(".", 1)[-1]] = name
+
+class ClassHierarchy:
+    """Supertype/subtype tables over Java type FQNs, with declared method names per type."""
+
+    def __init__(self):
+        self.supertypes: Dict[str, List[str]] = {}  # FQN -> direct supertypes (FQNs, known types only)
+        self.subtypes: Dict[str, List[str]] = {}    # FQN -> direct subtypes
+        self.methods: Dict[str, Set[str]] = {}      # FQN -> declared method names
+        self.kinds: Dict[str, str] = {}             # FQN -> class / interface / enum
+        self.instantiated: Set[str] = set()
+        self.scopes: Dict[str, TypeScope] = {}      # file path -> TypeScope
+        self._all_subtypes: Dict[str, Tuple[str, ...]] = {}
+        self._declaring: Dict[Tuple[str, str], Optional[str]] = {}
+
+    def build(self, parsed_files: Dict[Path, dict]):
+        raw_bases: List[Tuple[str, str, List[str]]] = []
+        for file_path, data in parsed_files.items():
+            if Path(file_path).suffix.lower() != '.java':
+                continue
+            package = data.get("package", "")
+            scope = TypeScope(package, data.get("imports", []))
+            self.scopes[str(file_path)] = scope
+            prefix = f"{package}." if package else ""
+            for cls in data.get("classes", []):
+                fqn = prefix + cls["name"]
+                if "." in cls["name"]:
+                    scope.nested.setdefault(cls["name"].rsplit(".", 1)[1], fqn)
+                self.kinds[fqn] = cls.get("kind", "class")
+                self.methods.setdefault(fqn, set()).update(cls.get("methods", []))
+                raw_bases.append((str(file_path), fqn, cls.get("bases", [])))
+
+        # Supertypes can only be resolved once every type is known
+        for file_path, fqn, bases in raw_bases:
+            supers = self.supertypes.setdefault(fqn, [])
+            for base in bases:
+                base_fqn = self.resolve_type(base, file_path)
+                if base_fqn and base_fqn != fqn and base_fqn not in supers:
+                    supers.append(base_fqn)
+                    self.subtypes.setdefault(base_fqn, []).append(fqn)
+
+        for file_path, data in parsed_files.items():
+            for type_name in data.get("instantiations", []):
+                fqn = self.resolve_type(type_name, str(file_path))
+                if fqn:
+                    self.instantiated.add(fqn)
+
+    def resolve_type(self, type_name: str, file_path: str) -> Optional[str]:
+        """FQN of a (possibly qualified) type name as written in a file, if it is a known type."""
+        if not type_name:
+            return None
+        type_name = type_name.rstrip("[]")
+        if type_name in self.kinds and "." in type_name:
+            return type_name
+        scope = self.scopes.get(str(file_path))
+        if scope is None:
+            return type_name if type_name in self.kinds else None
+
+        # Outer.Inner -> resolve Outer, keep the rest; nested types are keyed pkg.Outer.Inner
+        head, _, tail = type_name.partition(".")
+        candidates = []
+        if head in scope.nested:
+            candidates.append(scope.nested[head])
+        if head in scope.single:
+            candidates.append(scope.single[head])
+        candidates.append(f"{scope.package}.{head}" if scope.package else head)
+        candidates.extend(f"{pkg}.{head}" for pkg in scope.on_demand)
+        for candidate in candidates:
+            fqn = f"{candidate}.{tail}" if tail else candidate
+            if fqn in self.kinds:
+                return fqn
+        return None
+
+    def subtypes_of(self, fqn: str) -> Tuple[str, ...]:
+        """All transitive subtypes of a type (iterative, memoized)."""
+        cached = self._all_subtypes.get(fqn)
+        if cached is not None:
+            return cached
+        seen = []
+        visited = {fqn}
+        stack = list(self.subtypes.get(fqn, ()))
+        while stack:
+            sub = stack.pop()
+            if sub in visited:
+                continue
+            visited.add(sub)
+            seen.append(sub)
+            stack.extend(self.subtypes.get(sub, ()))
+        result = tuple(seen)
+        self._all_subtypes[fqn] = result
+        return result
+
+    def declaring_type(self, fqn: str, method: str) -> Optional[str]:
+        """The type whose declaration `fqn.method` binds to: fqn itself or its nearest supertype."""
+        key = (fqn, method)
+        if key in self._declaring:
+            return self._declaring[key]
+        found = None
+        visited = set()
+        queue = [fqn]
+        # Superclass chain and interfaces, breadth-first (superclass is listed first)
+        while queue and found is None:
+            current = queue.pop(0)
+            if current in visited:
+                continue
+            visited.add(current)
+            if method in self.methods.get(current, ()):
+                found = current
+                break
+            queue.extend(self.supertypes.get(current, ()))
+        self._declaring[key] = found
+        return found
+
+    def dispatch_targets(self, static_type: str, method: str, rta: bool = True) -> List[str]:
+        """
+        Types whose declaration of `method` a virtual call on `static_type` may reach.
+        With `rta`, receivers are limited to instantiated types; if none of the
+        candidate types is ever instantiated (e.g. instances come from outside the
+        analyzed code), this falls back to plain CHA.
+        """
+        receivers = (static_type,) + self.subtypes_of(static_type)
+        if rta:
+            live = [t for t in receivers if t in self.instantiated]
+            if live:
+                receivers = live
+
+        targets = []
+        for receiver in receivers:
+            declaring = self.declaring_type(receiver, method)
+            if declaring and declaring not in targets:
+                targets.append(declaring)
+        return targets
+
+    def superclass_of(self, fqn: str) -> Optional[str]:
+        """The first known supertype that is a class (not an interface)."""
+        for sup in self.supertypes.get(fqn, ()):
+            if self.kinds.get(sup) != "interface":
+                return sup
+        return None
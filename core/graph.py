@@ -0,0 +1,469 @@
+"""
+Graph Engine
+Compact directed graphs over dense integer node IDs (symbol IDs, file IDs).
+
+Adjacency is stored in compressed sparse row (CSR) form: an offsets array of
+length n+1 and one flat targets array, both array('i'), so an edge costs
+4 bytes instead of a pair of nested dicts. Reverse edges are built lazily in
+the same form. All traversals are iterative, so deep call chains cannot hit
+the recursion limit. networkx is only needed for export (to_networkx).
+OverlayGraph keeps edges added after a CSRGraph was built in plain lists,
+so incremental updates do not rebuild the arrays.
+"""
+
+from array import array
+from bisect import bisect_left
+from collections import deque
+from typing import Any, Callable, Dict, Iterable, Iterator, List, Optional, Set, Tuple
+
+class GraphBuilder:
+    """Accumulates edges, then freezes them into a CSRGraph."""
+
+    def __init__(self, num_nodes: int = 0):
+        self.num_nodes = num_nodes
+        self._sources = array('i')
+        self._targets = array('i')
+
+    def add_node(self, node: int):
+        if node >= self.num_nodes:
+            self.num_nodes = node + 1
+
+    def add_edge(self, source: int, target: int):
+        self._sources.append(source)
+        self._targets.append(target)
+        if source >= self.num_nodes or target >= self.num_nodes:
+            self.num_nodes = max(source, target) + 1
+
+    def build(self) -> "CSRGraph":
+        return CSRGraph.from_edges(self.num_nodes, self._sources, self._targets)
+
+class CSRGraph:
+    """
+    Immutable directed graph on nodes 0..n-1. Each adjacency row is sorted and
+    free of duplicate edges. Reachability results are bytearrays with one flag
+    byte per node, which is cheap to allocate, test and combine.
+    """
+
+    __slots__ = ("num_nodes", "offsets", "targets", "_reverse")
+
+    def __init__(self, num_nodes: int, offsets: array, targets: array):
+        self.num_nodes = num_nodes
+        self.offsets = offsets
+        self.targets = targets
+        self._reverse = None
+
+    @classmethod
+    def from_edges(cls, num_nodes: int, sources: Iterable[int], targets: Iterable[int]) -> "CSRGraph":
+        """
+        Build by counting sort on the source, as reverse() does: edges are
+        counted per node, then placed into one flat array, with no list per
+        node. Rows with several edges are then sorted and deduplicated while
+        the array is compacted in place.
+        """
+        sources = array('i', sources)
+        targets = array('i', targets)
+        offsets = array('i', [0]) * (num_nodes + 1)
+        for s in sources:
+            offsets[s + 1] += 1
+        for i in range(num_nodes):
+            offsets[i + 1] += offsets[i]
+
+        fill = offsets[:-1]
+        flat = array('i', [0]) * len(sources)
+        for s, t in zip(sources, targets):
+            flat[fill[s]] = t
+            fill[s] += 1
+
+        write = 0
+        for u in range(num_nodes):
+            lo, hi = offsets[u], offsets[u + 1]
+            offsets[u] = write
+            if hi - lo > 1:
+                row = sorted(set(flat[lo:hi]))
+                flat[write:write + len(row)] = array('i', row)
+                write += len(row)
+            elif hi > lo:
+                flat[write] = flat[lo]
+                write += 1
+        offsets[num_nodes] = write
+        del flat[write:]
+        return cls(num_nodes, offsets, flat)
+
+    @classmethod
+    def empty(cls, num_nodes: int = 0) -> "CSRGraph":
+        return cls(num_nodes, array('i', [0]) * (num_nodes + 1), array('i'))
+
+    # ── Basic queries ──────────────────────────────────────────────
+
+    def __len__(self) -> int:
+        return self.num_nodes
+
+    def __contains__(self, node: int) -> bool:
+        return 0 <= node < self.num_nodes
+
+    @property
+    def num_edges(self) -> int:
+        return len(self.targets)
+
+    def successors(self, node: int) -> array:
+        return self.targets[self.offsets[node]:self.offsets[node + 1]]
+
+    def predecessors(self, node: int) -> array:
+        return self.reverse().successors(node)
+
+    def out_degree(self, node: int) -> int:
+        return self.offsets[node + 1] - self.offsets[node]
+
+    def in_degree(self, node: int) -> int:
+        return self.reverse().out_degree(node)
+
+    def has_edge(self, source: int, target: int) -> bool:
+        lo, hi = self.offsets[source], self.offsets[source + 1]
+        i = bisect_left(self.targets, target, lo, hi)
+        return i < hi and self.targets[i] == target
+
+    def edges(self) -> Iterator[Tuple[int, int]]:
+        offsets, targets = self.offsets, self.targets
+        for u in range(self.num_nodes):
+            for i in range(offsets[u], offsets[u + 1]):
+                yield u, targets[i]
+
+    def reverse(self) -> "CSRGraph":
+        """Transposed graph (built once, on first use)."""
+        if self._reverse is None:
+            counts = array('i', [0]) * (self.num_nodes + 1)
+            for t in self.targets:
+                counts[t + 1] += 1
+            for i in range(self.num_nodes):
+                counts[i + 1] += counts[i]
+
+            fill = counts[:-1]
+            flat = array('i', [0]) * len(self.targets)
+            # Sources are visited in ascending order, so every reversed row comes out sorted
+            for u in range(self.num_nodes):
+                for i in range(self.offsets[u], self.offsets[u + 1]):
+                    t = self.targets[i]
+                    flat[fill[t]] = u
+                    fill[t] += 1
+            self._reverse = CSRGraph(self.num_nodes, counts, flat)
+            self._reverse._reverse = self
+        return self._reverse
+
+    # ── Traversals ─────────────────────────────────────────────────
+
+    def bfs(self, sources: Iterable[int]) -> Iterator[int]:
+        """Nodes reachable from `sources` (inclusive) in breadth-first order."""
+        offsets, targets = self.offsets, self.targets
+        seen = bytearray(self.num_nodes)
+        queue = deque()
+        for s in sources:
+            if not seen[s]:
+                seen[s] = 1
+                queue.append(s)
+        while queue:
+            u = queue.popleft()
+            yield u
+            for i in range(offsets[u], offsets[u + 1]):
+                v = targets[i]
+                if not seen[v]:
+                    seen[v] = 1
+                    queue.append(v)
+
+    def dfs(self, sources: Iterable[int]) -> Iterator[int]:
+        """Nodes reachable from `sources` (inclusive) in depth-first preorder."""
+        offsets, targets = self.offsets, self.targets
+        seen = bytearray(self.num_nodes)
+        for s in sources:
+            if seen[s]:
+                continue
+            stack = [s]
+            while stack:
+                u = stack.pop()
+                if seen[u]:
+                    continue
+                seen[u] = 1
+                yield u
+                # Push in reverse so the lowest-numbered successor is visited first
+                for i in range(offsets[u + 1] - 1, offsets[u] - 1, -1):
+                    v = targets[i]
+                    if not seen[v]:
+                        stack.append(v)
+
+    def reachable(self, sources: Iterable[int], reverse: bool = False) -> bytearray:
+        """Flag array of nodes reachable from `sources` (or reaching them, with `reverse`)."""
+        graph = self.reverse() if reverse else self
+        offsets, targets = graph.offsets, graph.targets
+        mark = bytearray(self.num_nodes)
+        stack = []
+        for s in sources:
+            if not mark[s]:
+                mark[s] = 1
+                stack.append(s)
+        while stack:
+            u = stack.pop()
+            for i in range(offsets[u], offsets[u + 1]):
+                v = targets[i]
+                if not mark[v]:
+                    mark[v] = 1
+                    stack.append(v)
+        return mark
+
+    def shortest_path(self, source: int, target: int) -> List[int]:
+        """Fewest-edges path from source to target, or [] if there is none."""
+        if source not in self or target not in self:
+            return []
+        if source == target:
+            return [source]
+        offsets, targets = self.offsets, self.targets
+        parent = array('i', [-1]) * self.num_nodes
+        parent[source] = source
+        queue = deque([source])
+        while queue:
+            u = queue.popleft()
+            for i in range(offsets[u], offsets[u + 1]):
+                v = targets[i]
+                if parent[v] != -1:
+                    continue
+                parent[v] = u
+                if v == target:
+                    path = [v]
+                    while v != source:
+                        v = parent[v]
+                        path.append(v)
+                    path.reverse()
+                    return path
+                queue.append(v)
+        return []
+
+    def strongly_connected_components(self) -> List[List[int]]:
+        """
+        Tarjan's algorithm with an explicit call stack.
+        Components are returned in reverse topological order (sinks first).
+        """
+        n = self.num_nodes
+        offsets, targets = self.offsets, self.targets
+        index = array('i', [-1]) * n
+        low = array('i', [0]) * n
+        on_stack = bytearray(n)
+        stack: List[int] = []
+        components: List[List[int]] = []
+        counter = 0
+
+        for root in range(n):
+            if index[root] != -1:
+                continue
+            # Frames are [node, next edge position]
+            work = [[root, offsets[root]]]
+            index[root] = low[root] = counter
+            counter += 1
+            stack.append(root)
+            on_stack[root] = 1
+
+            while work:
+                frame = work[-1]
+                u, pos = frame
+                if pos < offsets[u + 1]:
+                    frame[1] = pos + 1
+                    v = targets[pos]
+                    if index[v] == -1:
+                        index[v] = low[v] = counter
+                        counter += 1
+                        stack.append(v)
+                        on_stack[v] = 1
+                        work.append([v, offsets[v]])
+                    elif on_stack[v] and index[v] < low[u]:
+                        low[u] = index[v]
+                    continue
+
+                work.pop()
+                if work:
+                    parent = work[-1][0]
+                    if low[u] < low[parent]:
+                        low[parent] = low[u]
+                if low[u] == index[u]:
+                    component = []
+                    while True:
+                        w = stack.pop()
+                        on_stack[w] = 0
+                        component.append(w)
+                        if w == u:
+                            break
+                    components.append(component)
+        return components
+
+    def cyclic_components(self) -> List[List[int]]:
+        """SCCs that contain at least one cycle (more than one node, or a self-loop)."""
+        return [
+            component for component in self.strongly_connected_components()
+            if len(component) > 1 or self.has_edge(component[0], component[0])
+        ]
+
+    def representative_cycles(self, max_per_component: int = 3, degree: Callable[[int], int] = None
+                              ) -> List[Tuple[List[int], List[List[int]]]]:
+        """
+        Cyclic SCCs, each with up to `max_per_component` distinct shortest cycles.
+        Each cycle is found by a BFS confined to its component, starting from the
+        component's highest-degree nodes, so the total work is
+        O(max_per_component * (V + E)) regardless of how tangled the graph is.
+        `degree` overrides out_degree() when ranking start nodes (for a subgraph
+        that should pick the same starts as the graph it was cut from).
+        """
+        degree = degree or self.out_degree
+        components = self.cyclic_components()
+        membership = array('i', [-1]) * self.num_nodes
+        for comp_index, component in enumerate(components):
+            for node in component:
+                membership[node] = comp_index
+
+        results = []
+        for comp_index, component in enumerate(components):
+            starts = sorted(component, key=lambda u: (-degree(u), u))[:max_per_component]
+            cycles = []
+            seen = set()
+            for start in starts:
+                cycle = self._shortest_cycle_through(start, membership, comp_index)
+                if not cycle:
+                    continue
+                # Canonical rotation (smallest node first) to drop duplicates
+                pivot = cycle.index(min(cycle))
+                key = tuple(cycle[pivot:] + cycle[:pivot])
+                if key not in seen:
+                    seen.add(key)
+                    cycles.append(list(key))
+            results.append((sorted(component), cycles))
+        return results
+
+    def _shortest_cycle_through(self, start: int, membership: array, comp_index: int) -> List[int]:
+        offsets, targets = self.offsets, self.targets
+        parent = {start: start}
+        queue = deque([start])
+        while queue:
+            u = queue.popleft()
+            for i in range(offsets[u], offsets[u + 1]):
+                v = targets[i]
+                if v == start:
+                    cycle = [u]
+                    while u != start:
+                        u = parent[u]
+                        cycle.append(u)
+                    cycle.reverse()
+                    return cycle
+                if v not in parent and membership[v] == comp_index:
+                    parent[v] = u
+                    queue.append(v)
+        return []
+
+    # ── Export ─────────────────────────────────────────────────────
+
+    def to_networkx(self, label: Callable[[int], Any] = None, nodes: Iterable[int] = None):
+        """
+        Export to a networkx.DiGraph (for visualisation or ad-hoc analysis only).
+        `label` maps node IDs to networkx node keys; `nodes` restricts the export.
+        """
+        import networkx as nx
+
+        label = label or (lambda node: node)
+        keep = None
+        if nodes is not None:
+            keep = bytearray(self.num_nodes)
+            for node in nodes:
+                keep[node] = 1
+
+        graph = nx.DiGraph()
+        for u in range(self.num_nodes):
+            if keep is None or keep[u]:
+                graph.add_node(label(u))
+        for u, v in self.edges():
+            if keep is None or (keep[u] and keep[v]):
+                graph.add_edge(label(u), label(v))
+        return graph
+
+class OverlayGraph:
+    """
+    A CSRGraph plus edges added since it was built. Added edges are kept in
+    per-node lists, never duplicating a base edge, so adding one is O(1)
+    instead of an O(V + E) rebuild. freeze() merges them into a new CSRGraph
+    for whole-graph algorithms.
+    """
+
+    __slots__ = ("base", "_extra", "_extra_reverse", "_num_nodes")
+
+    def __init__(self, base: CSRGraph = None):
+        self.base = base or CSRGraph.empty()
+        self._extra: Dict[int, List[int]] = {}          # source -> added targets
+        self._extra_reverse: Dict[int, List[int]] = {}  # target -> added sources
+        self._num_nodes = self.base.num_nodes
+
+    @property
+    def num_nodes(self) -> int:
+        return self._num_nodes
+
+    def __contains__(self, node: int) -> bool:
+        return 0 <= node < self._num_nodes
+
+    def add_edge(self, source: int, target: int) -> bool:
+        """Add an edge; returns False if it was already present."""
+        if self.has_edge(source, target):
+            return False
+        self._extra.setdefault(source, []).append(target)
+        self._extra_reverse.setdefault(target, []).append(source)
+        self._num_nodes = max(self._num_nodes, source + 1, target + 1)
+        return True
+
+    def has_edge(self, source: int, target: int) -> bool:
+        if source < self.base.num_nodes and self.base.has_edge(source, target):
+            return True
+        return target in self._extra.get(source, ())
+
+    def successors(self, node: int) -> List[int]:
+        base = self.base.successors(node) if node < self.base.num_nodes else ()
+        return [*base, *self._extra.get(node, ())]
+
+    def predecessors(self, node: int) -> List[int]:
+        base = self.base.predecessors(node) if node < self.base.num_nodes else ()
+        return [*base, *self._extra_reverse.get(node, ())]
+
+    def out_degree(self, node: int) -> int:
+        base = self.base.out_degree(node) if node < self.base.num_nodes else 0
+        return base + len(self._extra.get(node, ()))
+
+    def edges(self) -> Iterator[Tuple[int, int]]:
+        yield from self.base.edges()
+        for source, targets in self._extra.items():
+            for target in targets:
+                yield source, target
+
+    def reachable(self, sources: Iterable[int], reverse: bool = False,
+                  within: Optional[Set[int]] = None) -> Set[int]:
+        """
+        Nodes reachable from `sources` (or reaching them, with `reverse`),
+        optionally without leaving `within`. Returns a set, since callers
+        use this on small regions of a large graph.
+        """
+        step = self.predecessors if reverse else self.successors
+        seen = {s for s in sources if within is None or s in within}
+        stack = list(seen)
+        while stack:
+            for v in step(stack.pop()):
+                if v not in seen and (within is None or v in within):
+                    seen.add(v)
+                    stack.append(v)
+        return seen
+
+    def freeze(self, num_nodes: int = 0) -> CSRGraph:
+        """
+        The graph as a plain CSRGraph with at least `num_nodes` nodes. Added
+        edges are merged into a new base the first time this is called after
+        a change; otherwise the base is returned as is.
+        """
+        num_nodes = max(num_nodes, self._num_nodes)
+        if self._extra or num_nodes > self.base.num_nodes:
+            sources, targets = array('i'), array('i')
+            for source, target in self.edges():
+                sources.append(source)
+                targets.append(target)
+            self.base = CSRGraph.from_edges(num_nodes, sources, targets)
+            self._extra.clear()
+            self._extra_reverse.clear()
+            self._num_nodes = num_nodes
+        return self.base
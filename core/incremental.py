@@ -0,0 +1,203 @@
+"""
+Incremental Analysis
+Changed files and line ranges between a git ref and the working tree, and the
+set of functions whose audit inputs they touch. Used by `analyze --since <ref>`
+so a run only re-checks what a change can affect:
+  - functions and classes whose source lines changed
+  - callers whose dependency hints name a changed function
+Structural findings are narrowed the same way (findings_touching).
+"""
+
+import subprocess
+from pathlib import Path
+from typing import Any, Container, Dict, Iterable, List, Optional, Set, Tuple
+
+class ChangeSet:
+    """Files changed since a ref, each with its changed line ranges (None = whole file)."""
+
+    def __init__(self, ref: str, files: Dict[Path, Optional[List[Tuple[int, int]]]], deleted: Set[Path],
+                 root: Path = None):
+        self.ref = ref
+        self.files = files
+        self.deleted = deleted
+        self.root = root  # git top-level directory, for reading files at `ref`
+
+    def __contains__(self, file_path: Path) -> bool:
+        return Path(file_path).resolve() in self.files
+
+    def __len__(self) -> int:
+        return len(self.files)
+
+    def touches(self, file_path: Path, first_line: int, last_line: int) -> bool:
+        """Whether any changed line of the file falls within first_line..last_line."""
+        file_path = Path(file_path).resolve()
+        if file_path not in self.files:
+            return False
+        ranges = self.files[file_path]
+        if ranges is None:
+            return True
+        return any(start <= last_line and first_line <= end for start, end in ranges)
+
+def _git(folder: Path, *args: str) -> str:
+    try:
+        result = subprocess.run(["git", "-C", str(folder), *args], capture_output=True, text=True)
+    except OSError as e:
+        raise RuntimeError(f"git is not available: {e}")
+    if result.returncode != 0:
+        raise RuntimeError(result.stderr.strip() or f"git {args[0]} failed")
+    return result.stdout
+
+def changes_since(folder: Path, ref: str) -> ChangeSet:
+    """
+    Files under `folder` that differ between `ref` and the working tree
+    (`git diff --name-only`, plus untracked files), with changed line ranges
+    from a zero-context diff. Raises RuntimeError if git cannot answer.
+    """
+    folder = Path(folder).resolve()
+    root = Path(_git(folder, "rev-parse", "--show-toplevel").strip())
+    try:
+        _git(folder, "rev-parse", "--verify", "--quiet", f"{ref}^{{commit}}")
+    except RuntimeError:
+        raise RuntimeError(f"Unknown git ref: {ref}")
+
+    names = _git(folder, "diff", "--name-only", "-z", "--no-renames", ref, "--", ".").split("\0")
+    untracked = _git(folder, "ls-files", "--others", "--exclude-standard", "-z", "--full-name", "--", ".").split("\0")
+
+    files: Dict[Path, Optional[List[Tuple[int, int]]]] = {}
+    deleted: Set[Path] = set()
+    for name in filter(None, names):
+        path = (root / name).resolve()
+        if path.exists():
+            files[path] = []
+        else:
+            deleted.add(path)
+    for name in filter(None, untracked):
+        files[(root / name).resolve()] = None
+
+    # Hunk headers of a zero-context diff: @@ -a,b +c,d @@ -> new lines c..c+d-1
+    current = None
+    for line in _git(folder, "diff", "--no-color", "--unified=0", "--no-renames", ref, "--", ".").splitlines():
+        if line.startswith("+++ "):
+            target = line[4:]
+            current = (root / target[2:]).resolve() if target.startswith("b/") else None
+        elif line.startswith("@@") and current in files and files[current] is not None:
+            new_range = line.split(" ")[2]  # +c,d
+            start, _, count = new_range[1:].partition(",")
+            start, count = int(start), int(count) if count else 1
+            # Pure deletions (count 0) still change the code around line `start`
+            files[current].append((start, start + max(count, 1) - 1))
+    for path, ranges in files.items():
+        if ranges == []:
+            files[path] = None  # Mode or binary change: no hunks, treat as fully changed
+    return ChangeSet(ref, files, deleted, root)
+
+def previous_versions(changes: ChangeSet) -> Dict[Path, str]:
+    """
+    Text at `changes.ref` of the changed and deleted files that existed there,
+    read with one `git cat-file --batch` call.
+    """
+    if changes.root is None:
+        return {}
+    paths = sorted(set(changes.files) | changes.deleted)
+    request = "".join(f"{changes.ref}:{path.relative_to(changes.root).as_posix()}\n" for path in paths)
+    try:
+        result = subprocess.run(["git", "-C", str(changes.root), "cat-file", "--batch"],
+                                input=request.encode("utf-8"), capture_output=True)
+    except OSError:
+        return {}
+    out, pos, versions = result.stdout, 0, {}
+    for path in paths:
+        end = out.find(b"\n", pos)
+        if end < 0:
+            break
+        header = out[pos:end].split(b" ")
+        pos = end + 1
+        if len(header) != 3 or header[1] != b"blob":
+            continue  # "<object> missing": new in the working tree
+        size = int(header[2])
+        versions[path] = out[pos:pos + size].decode("utf-8", errors="replace")
+        pos += size + 1
+    return versions
+
+def called_names(data: dict) -> Set[str]:
+    """Names one file's parser output calls, from its functions and at module level."""
+    names = {call["name"] for call in data.get("module_calls", ())}
+    for func in data.get("functions", ()):
+        names.update(func.get("calls", ()))
+        names.update(call["name"] for call in func.get("calls_detailed", ()))
+    return names
+
+def _line_of(data: bytes, offset: int) -> int:
+    return data.count(b"\n", 0, offset) + 1
+
+def audit_targets(changes: ChangeSet, raw_data: Dict[str, dict], source_cache) -> Dict[str, Set[int]]:
+    """
+    Functions to re-audit, as file -> set of definition lines: every function whose
+    source overlaps a changed line, plus every function whose dependency hints
+    ("Functions this calls: ...") name one of those changed functions.
+    """
+    targets: Dict[str, Set[int]] = {}
+    changed_names: Set[str] = set()
+    for file_str, data in raw_data.items():
+        if Path(file_str) not in changes:
+            continue
+        source = source_cache.get(Path(file_str)).data
+        for func in data.get("functions", []):
+            span = func.get("span") or [0, 0]
+            last_line = _line_of(source, span[1]) if span[1] else func["line"]
+            if changes.touches(Path(file_str), func["line"], last_line):
+                targets.setdefault(file_str, set()).add(func["line"])
+                changed_names.add(func["name"])
+
+    for file_str, data in raw_data.items():
+        for func in data.get("functions", []):
+            if changed_names.intersection(func.get("calls", ())):
+                targets.setdefault(file_str, set()).add(func["line"])
+    return targets
+
+def changed_classes(changes: ChangeSet, file_path: Path, classes: Iterable[dict], source_cache) -> Set[str]:
+    """Names of the classes in a file whose source overlaps a changed line."""
+    if file_path not in changes:
+        return set()
+    source = source_cache.get(file_path).data
+    names = set()
+    for cls in classes:
+        span = cls.get("span") or [0, 0]
+        last_line = _line_of(source, span[1]) if span[1] else cls["line"]
+        if changes.touches(file_path, cls["line"], last_line):
+            names.add(cls["name"])
+    return names
+
+def findings_touching(files: Container[Path], results: Dict[str, Any],
+                      called: Container[str] = frozenset()) -> Dict[str, list]:
+    """
+    The structural findings of `results` (StructuralAnalyzer output) that a
+    change to `files` (a ChangeSet or a set of paths) can affect. The checks
+    run over the whole tree; this narrows what is reported to findings in
+    those files, plus findings elsewhere whose inputs they feed:
+      - dead functions named in `called` (the names the changed or deleted
+        files call, before and after the change), which may have lost their
+        last caller
+      - every cycle of a function SCC or import group with a member in a
+        changed file, since an edge from that file can reshape the whole
+        component, not only the cycles reported through it
+    Files are compared by full path, so same-named files elsewhere do not match.
+    """
+    cycle_members = set()
+    for component in results.get("function_sccs", ()):
+        if any(s.file in files for s in component):
+            cycle_members.update(s.id for s in component)
+    group_cycles = set()
+    for group in results.get("dependency_groups", ()):
+        if any(Path(p) in files for p in group["files"]):
+            group_cycles.update(tuple(cycle) for cycle in group["cycles"])
+    cycles = results["circular_dependencies"]
+    cycle_paths = results["circular_dependency_paths"]
+    return {
+        "dead_code": [s for s in results["dead_code"] if s.file in files or s.name in called],
+        "unused_variables": [v for v in results["unused_variables"] if Path(v["path"]) in files],
+        "function_cycles": [c for c in results["function_cycles"]
+                            if c[0].id in cycle_members or any(s.file in files for s in c)],
+        "circular_dependencies": [cycle for cycle, paths in zip(cycles, cycle_paths)
+                                  if tuple(paths[:-1]) in group_cycles or any(Path(p) in files for p in paths)],
+    }
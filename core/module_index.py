@@ -0,0 +1,224 @@
+"""
+Module Index
+Maps import statements to the files they refer to with hash lookups:
+  - Python: dotted module names, computed from package roots (__init__.py chains)
+  - Java: fully qualified class names (package declaration + class name) and packages
+  - C/C++: #include paths, relative to the including file or an include directory
+The index is persisted in .analyzer_cache/ and reused while the set of files
+(paths and content hashes) is unchanged.
+"""
+
+import hashlib
+import json
+import os
+from pathlib import Path
+from typing import Dict, Iterable, List, Optional, Tuple
+
+from core.parsed_unit import LANG_BY_EXT
+from core.source_cache import FileTable
+
+class ModuleIndex:
+    """Import-name -> file-ID tables for Python, Java and C/C++."""
+
+    FILE_NAME = "module_index.json"
+    VERSION = 1
+
+    def __init__(self, files: FileTable = None, include_dirs: Iterable[Path] = ()):
+        self.files = files or FileTable()
+        self.include_dirs = [os.path.normpath(str(d)) for d in include_dirs]
+        self.modules: Dict[str, List[int]] = {}   # Python dotted module / Java FQN -> file IDs
+        self.packages: Dict[str, List[int]] = {}  # Java package -> file IDs
+        self.paths: Dict[str, int] = {}           # normalized path -> file ID (C/C++ includes)
+        self.module_of: Dict[int, str] = {}       # file ID -> Python module / Java package
+        self._package_dirs: Dict[str, Tuple[str, ...]] = {}
+
+    # ── Building ───────────────────────────────────────────────────
+
+    def add_file(self, file_path: Path, data: dict):
+        """Register one file using its parser output."""
+        file_id = self.files.id_of(file_path)
+        language = LANG_BY_EXT.get(Path(file_path).suffix.lower())
+        self.paths[os.path.normpath(str(file_path))] = file_id
+
+        if language == 'python':
+            module = self._python_module(Path(file_path))
+            self.module_of[file_id] = module
+            self._add(self.modules, module, file_id)
+        elif language == 'java':
+            package = data.get("package", "")
+            self.module_of[file_id] = package
+            self._add(self.packages, package, file_id)
+            prefix = f"{package}." if package else ""
+            for cls in data.get("classes", []):
+                self._add(self.modules, prefix + cls["name"], file_id)
+            # Public class name == file name, even if class extraction missed it
+            self._add(self.modules, prefix + Path(file_path).stem, file_id)
+
+    def build(self, parsed_files: Dict[Path, dict]):
+        """(Re)build every table from scratch for this set of files."""
+        self.modules, self.packages, self.paths, self.module_of = {}, {}, {}, {}
+        self._package_dirs.clear()
+        for file_path, data in parsed_files.items():
+            self.add_file(file_path, data)
+
+    @staticmethod
+    def _add(table: Dict[str, List[int]], key: str, file_id: int):
+        ids = table.setdefault(key, [])
+        if file_id not in ids:
+            ids.append(file_id)
+
+    def _python_module(self, file_path: Path) -> str:
+        """Dotted module name: the chain of enclosing packages plus the file stem."""
+        package = self._package_of(str(file_path.parent))
+        if file_path.stem == "__init__":
+            return ".".join(package) or file_path.parent.name
+        return ".".join(package + (file_path.stem,))
+
+    def _package_of(self, directory: str) -> Tuple[str, ...]:
+        # Memoized per directory, so each __init__.py is stat'ed once
+        cached = self._package_dirs.get(directory)
+        if cached is not None:
+            return cached
+        if os.path.isfile(os.path.join(directory, "__init__.py")):
+            parent = os.path.dirname(directory)
+            package = (self._package_of(parent) if parent != directory else ()) + (os.path.basename(directory),)
+        else:
+            package = ()
+        self._package_dirs[directory] = package
+        return package
+
+    # ── Resolution ─────────────────────────────────────────────────
+
+    def resolve(self, imp: dict, from_path: Path) -> List[int]:
+        """File IDs an import record (from the structural parser) refers to."""
+        language = LANG_BY_EXT.get(Path(from_path).suffix.lower())
+        if language == 'python':
+            return self._resolve_python(imp, from_path)
+        if language == 'java':
+            return self._resolve_java(imp.get("module") or "")
+        if language in ('c', 'cpp'):
+            return self._resolve_include(imp.get("module") or "", from_path)
+        return []
+
+    def _resolve_python(self, imp: dict, from_path: Path) -> List[int]:
+        module = imp.get("module")
+        level = imp.get("level", 0)
+        names = imp.get("names", [])
+
+        if level:
+            # Relative import: climb from the importing module's package
+            current = self.module_of.get(self.files.id_of(from_path), "").split(".")
+            if Path(from_path).stem != "__init__":
+                current = current[:-1]
+            base = current[:max(0, len(current) - (level - 1))]
+            module = ".".join(base + ([module] if module else []))
+
+        if module is None:
+            # import a.b.c
+            targets = []
+            for name in names:
+                targets.extend(self.modules.get(name, ()))
+            return targets
+
+        targets = []
+        needs_module = not names
+        for name in names:
+            # from pkg import submodule
+            submodule = self.modules.get(f"{module}.{name}" if module else name)
+            if submodule:
+                targets.extend(submodule)
+            else:
+                needs_module = True
+        if needs_module and module:
+            targets.extend(self.modules.get(module, ()))
+        return targets
+
+    def _resolve_java(self, text: str) -> List[int]:
+        text = text.strip().rstrip(";").strip()
+        if not text.startswith("import "):
+            return []  # package declarations are not dependencies
+        name = text[len("import "):].strip()
+        is_static = name.startswith("static ")
+        if is_static:
+            name = name[len("static "):].strip()
+        name = name.replace(" ", "")
+
+        if name.endswith(".*"):
+            name = name[:-2]
+            return list(self.modules.get(name, ())) if is_static else list(self.packages.get(name, ()))
+        if is_static:
+            name = name.rsplit(".", 1)[0]  # import static a.b.C.member
+        return list(self.modules.get(name, ()))
+
+    def _resolve_include(self, text: str, from_path: Path) -> List[int]:
+        text = text.strip()
+        if not text.startswith("#"):
+            return []  # using-declarations
+        rest = text[1:].strip()
+        if not rest.startswith("include"):
+            return []
+        target = rest[len("include"):].strip()
+        if len(target) < 2 or target[0] not in '"<':
+            return []
+        quoted = target[0] == '"'
+        end = target.find('"' if quoted else '>', 1)
+        if end < 0:
+            return []
+        target = target[1:end]
+
+        # Quoted includes search the including file's directory first
+        search = self.include_dirs
+        if quoted:
+            search = [os.path.dirname(str(from_path))] + search
+        for directory in search:
+            file_id = self.paths.get(os.path.normpath(os.path.join(directory, target)))
+            if file_id is not None:
+                return [file_id]
+        return []
+
+    # ── Persistence ────────────────────────────────────────────────
+
+    @staticmethod
+    def fingerprint(entries: Iterable[Tuple[str, str]]) -> str:
+        """Digest of the (path, content hash) pairs the index was built from."""
+        digest = hashlib.blake2b(digest_size=16)
+        for path, content_hash in sorted(entries):
+            digest.update(f"{path}\0{content_hash}\n".encode("utf-8"))
+        return digest.hexdigest()
+
+    def save(self, cache_dir: Path, fingerprint: str):
+        payload = {
+            "version": self.VERSION,
+            "fingerprint": fingerprint,
+            "include_dirs": self.include_dirs,
+            "files": [str(self.files.path_of(fid)) for fid in range(len(self.files))],
+            "modules": self.modules,
+            "packages": self.packages,
+            "module_of": {str(fid): name for fid, name in self.module_of.items()},
+            "paths": sorted(self.paths.values()),
+        }
+        cache_dir = Path(cache_dir)
+        cache_dir.mkdir(parents=True, exist_ok=True)
+        tmp = cache_dir / (self.FILE_NAME + ".tmp")
+        with open(tmp, "w", encoding="utf-8") as f:
+            json.dump(payload, f, separators=(",", ":"))
+        os.replace(tmp, cache_dir / self.FILE_NAME)
+
+    def load(self, cache_dir: Path, fingerprint: str) -> bool:
+        """Restore a saved index if it was built from exactly the same files."""
+        try:
+            with open(Path(cache_dir) / self.FILE_NAME, "r", encoding="utf-8") as f:
+                payload = json.load(f)
+        except (OSError, ValueError):
+            return False
+        if (payload.get("version") != self.VERSION or payload.get("fingerprint") != fingerprint
+                or payload.get("include_dirs") != self.include_dirs):
+            return False
+
+        # Saved IDs are positions in the saved file list; remap them onto our FileTable
+        remap = [self.files.id_of(Path(p)) for p in payload["files"]]
+        self.modules = {k: [remap[i] for i in v] for k, v in payload["modules"].items()}
+        self.packages = {k: [remap[i] for i in v] for k, v in payload["packages"].items()}
+        self.module_of = {remap[int(k)]: v for k, v in payload["module_of"].items()}
+        self.paths = {os.path.normpath(payload["files"][i]): remap[i] for i in payload["paths"]}
+        return True
@@ -0,0 +1,103 @@
+"""
+Parse Cache
+Persistent, content-addressed store of parser output under .analyzer_cache/.
+Entries are keyed by (kind, content hash, language, parser version), so an
+unchanged file skips parsing entirely on the next run and a parser upgrade
+simply misses instead of serving stale data.
+"""
+
+import json
+import sqlite3
+import threading
+import zlib
+from pathlib import Path
+from typing import Any, Dict, Optional
+
+CACHE_DIR_NAME = ".analyzer_cache"
+
+class ParseCache:
+    """SQLite-backed cache of JSON-serializable parse results."""
+
+    DB_NAME = "parse_cache.sqlite3"
+    FLUSH_EVERY = 500
+
+    def __init__(self, root: Path, cache_dir: Optional[Path] = None):
+        self.cache_dir = cache_dir or (Path(root) / CACHE_DIR_NAME)
+        self.cache_dir.mkdir(parents=True, exist_ok=True)
+        self.db_path = self.cache_dir / self.DB_NAME
+
+        self._lock = threading.Lock()
+        self._pending: Dict[tuple, bytes] = {}
+        self.hits = 0
+        self.misses = 0
+
+        self._conn = sqlite3.connect(str(self.db_path), check_same_thread=False)
+        self._conn.execute("PRAGMA journal_mode=WAL")
+        self._conn.execute("PRAGMA synchronous=NORMAL")
+        self._conn.execute(
+            """
+            CREATE TABLE IF NOT EXISTS parse_results (
+                kind TEXT NOT NULL,
+                content_hash TEXT NOT NULL,
+                language TEXT NOT NULL,
+                parser_version TEXT NOT NULL,
+                payload BLOB NOT NULL,
+                PRIMARY KEY (kind, content_hash, language, parser_version)
+            ) WITHOUT ROWID
+            """
+        )
+        self._conn.commit()
+
+    def get(self, kind: str, content_hash: str, language: str, parser_version: str) -> Optional[Any]:
+        """Return the cached payload, or None on a miss."""
+        with self._lock:
+            row = self._conn.execute(
+                "SELECT payload FROM parse_results "
+                "WHERE kind = ? AND content_hash = ? AND language = ? AND parser_version = ?",
+                (kind, content_hash, language, parser_version)
+            ).fetchone()
+            if row is None:
+                # May still be queued for writing
+                pending = self._pending.get((kind, content_hash, language, parser_version))
+                if pending is not None:
+                    row = (pending,)
+            if row is None:
+                self.misses += 1
+                return None
+            self.hits += 1
+
+        try:
+            return json.loads(zlib.decompress(row[0]))
+        except (zlib.error, ValueError):
+            return None
+
+    def put(self, kind: str, content_hash: str, language: str, parser_version: str, payload: Any):
+        """Queue a result for writing; rows are flushed in batches."""
+        blob = zlib.compress(json.dumps(payload, separators=(",", ":")).encode("utf-8"))
+        with self._lock:
+            self._pending[(kind, content_hash, language, parser_version)] = blob
+            if len(self._pending) >= self.FLUSH_EVERY:
+                self._flush_locked()
+
+    def flush(self):
+        with self._lock:
+            self._flush_locked()
+
+    def close(self):
+        with self._lock:
+            self._flush_locked()
+            self._conn.close()
+
+    def stats(self) -> Dict[str, int]:
+        return {"hits": self.hits, "misses": self.misses}
+
+    def _flush_locked(self):
+        if not self._pending:
+            return
+        self._conn.executemany(
+            "INSERT OR REPLACE INTO parse_results "
+            "(kind, content_hash, language, parser_version, payload) VALUES (?, ?, ?, ?, ?)",
+            [key + (blob,) for key, blob in self._pending.items()]
+        )
+        self._conn.commit()
+        self._pending = {}
@@ -0,0 +1,289 @@
+"""
+Parsed Units
+Parses each file once and shares the result between syntax checking,
+structural extraction and static bug detection:
+  - Python: native ast.parse()
+  - C/C++/Java: Tree-sitter
+"""
+
+import ast
+from collections import OrderedDict
+from pathlib import Path
+from typing import List, Optional, Tuple
+
+from core.source_cache import SourceCache
+
+try:
+    import tree_sitter_languages
+    TREESITTER_AVAILABLE = True
+except ImportError:
+    TREESITTER_AVAILABLE = False
+
+LANG_BY_EXT = {
+    '.py': 'python',
+    '.c': 'c',
+    '.cpp': 'cpp',
+    '.cc': 'cpp',
+    '.h': 'cpp',  # Headers can be C or C++; the C++ grammar accepts both
+    '.hpp': 'cpp',
+    '.java': 'java'
+}
+
+class FileSyntaxError:
+    def __init__(self, message: str = "", parser: str = "unknown", line: int = 0, column: int = 0,
+                 start_byte: int = -1, end_byte: int = -1):
+        self.line = line
+        self.column = column
+        self.message = message
+        self.parser = parser
+        # Byte span of the offending node (Tree-sitter only), used for incremental re-checks
+        self.start_byte = start_byte
+        self.end_byte = end_byte
+        # Compatibility attributes
+        self.type = "syntax_error"
+        self.severity = "critical"
+
+class ParsedUnit:
+    """
+    One parse of one file: the Tree-sitter Tree (C/C++/Java) or the Python
+    ast.Module, plus the syntax errors found while parsing.
+    `module` is None when Python source does not parse.
+    """
+
+    __slots__ = ("path", "language", "code", "data", "content_hash", "tree", "module", "errors")
+
+    def __init__(self, path: Optional[Path], language: Optional[str], code: str, data: bytes,
+                 content_hash: str = "", tree=None, module: ast.Module = None,
+                 errors: List[FileSyntaxError] = None):
+        self.path = path
+        self.language = language
+        self.code = code
+        self.data = data
+        self.content_hash = content_hash
+        self.tree = tree
+        self.module = module
+        self.errors = errors or []
+
+    @property
+    def is_valid(self) -> bool:
+        return not self.errors
+
+class UnitParser:
+    """
+    Owns the Tree-sitter languages/parsers and produces ParsedUnits.
+    Units for files on disk are cached by path and reused while the
+    content hash is unchanged.
+    """
+
+    DEFAULT_MAX_UNITS = 4096
+    # Bump whenever syntax-error collection changes (invalidates cached syntax results)
+    VERSION = "1"
+
+    def __init__(self, source_cache: SourceCache = None, max_units: int = DEFAULT_MAX_UNITS):
+        self.source_cache = source_cache or SourceCache()
+        self.max_units = max_units
+        self.languages = {}
+        self.parsers = {}
+        self._units: "OrderedDict[str, ParsedUnit]" = OrderedDict()
+
+        if TREESITTER_AVAILABLE:
+            for lang_id in ['c', 'cpp', 'java']:
+                try:
+                    self.languages[lang_id] = tree_sitter_languages.get_language(lang_id)
+                    self.parsers[lang_id] = tree_sitter_languages.get_parser(lang_id)
+                except Exception as e:
+                    print(f"[WARNING] Failed to load tree-sitter parser for {lang_id}: {e}")
+        else:
+            print("[DEBUG] Tree-sitter NOT available (ImportError)")
+
+    def parse_file(self, file_path: Path, incremental: bool = False) -> ParsedUnit:
+        """
+        Parse a file through the source cache, reusing the last unit if the content is unchanged.
+        With `incremental`, a changed Tree-sitter file is re-parsed by editing the previous tree
+        (which is mutated, so only use this when nothing else holds the old unit).
+        """
+        source = self.source_cache.get(file_path)
+        key = str(file_path)
+
+        unit = self._units.get(key)
+        if unit is not None and unit.content_hash == source.content_hash:
+            self._units.move_to_end(key)
+            return unit
+
+        if incremental and unit is not None and unit.tree is not None and unit.language in self.parsers:
+            tree, errors = reparse_incremental(
+                self.parsers[unit.language], unit.tree, unit.errors,
+                unit.data, source.data, source.text, unit.language
+            )
+            unit = ParsedUnit(Path(file_path), unit.language, source.text, source.data,
+                              source.content_hash, tree=tree, errors=errors)
+        else:
+            unit = self._parse(Path(file_path), file_path.suffix.lower(), source.text, source.data, source.content_hash)
+        self._units[key] = unit
+        self._units.move_to_end(key)
+        while len(self._units) > self.max_units:
+            self._units.popitem(last=False)
+        return unit
+
+    def parse_source(self, code: str, extension: str, file_path: Path = None) -> ParsedUnit:
+        """Parse an in-memory string (not cached)."""
+        return self._parse(file_path, extension.lower(), code, code.encode('utf-8'))
+
+    def forget(self, file_path: Path):
+        self._units.pop(str(file_path), None)
+
+    def _parse(self, file_path: Optional[Path], ext: str, code: str, data: bytes, content_hash: str = "") -> ParsedUnit:
+        language = LANG_BY_EXT.get(ext)
+        unit = ParsedUnit(file_path, language, code, data, content_hash)
+
+        if language == 'python':
+            try:
+                unit.module = ast.parse(code)
+            except SyntaxError as e:
+                unit.errors.append(FileSyntaxError(
+                    line=e.lineno or 0,
+                    column=e.offset or 0,
+                    message=str(e),
+                    parser="python-ast"
+                ))
+            except Exception as e:
+                unit.errors.append(FileSyntaxError(message=str(e), parser="python-ast"))
+
+        elif language in self.parsers:
+            unit.tree = self.parsers[language].parse(data)
+            unit.errors = collect_treesitter_errors(unit.tree, code, language)
+
+        return unit
+
+def collect_treesitter_errors(tree, source: str, language: str, ranges: List[Tuple[int, int]] = None) -> List[FileSyntaxError]:
+    """
+    Walk the parse tree for ERROR and MISSING nodes.
+    Deduplicates nested errors (if parent is ERROR, skip children).
+    Only subtrees flagged `has_error` are entered; with `ranges`, only nodes
+    overlapping one of the [start_byte, end_byte) ranges are visited.
+    """
+    source_lines = source.splitlines()
+    errors = []
+
+    def overlaps(node):
+        return _touches_any(node.start_byte, node.end_byte, ranges)
+
+    def walk(node):
+        is_error = node.type == 'ERROR'
+        is_missing = getattr(node, 'is_missing', False)
+
+        if is_error or is_missing:
+            line = node.start_point[0] + 1
+            col = node.start_point[1] + 1
+
+            # Build a descriptive error message
+            if is_missing:
+                msg = f"Missing expected token: '{node.type}'"
+            else:
+                # Get the problematic text (truncated)
+                try:
+                    text = node.text.decode('utf-8', errors='replace')[:50]
+                    if len(text) > 40:
+                        text = text[:40] + "..."
+                except:
+                    text = ""
+
+                # Get the source line for context
+                if 0 < line <= len(source_lines):
+                    src_line = source_lines[line - 1].strip()
+                    msg = f"Syntax error near: '{src_line[:60]}'"
+                elif text:
+                    msg = f"Unexpected syntax: '{text}'"
+                else:
+                    msg = "Syntax error"
+
+            errors.append(FileSyntaxError(
+                message=msg,
+                parser=f"{language}-treesitter",
+                line=line,
+                column=col,
+                start_byte=node.start_byte,
+                end_byte=node.end_byte
+            ))
+
+        # Children of ERROR nodes would only duplicate it
+        if is_error:
+            return
+        for child in node.children:
+            if child.has_error and (ranges is None or overlaps(child)):
+                walk(child)
+
+    root = tree.root_node
+    if root.has_error:
+        walk(root)
+    return errors
+
+def reparse_incremental(parser, old_tree, old_errors: List[FileSyntaxError], old_data: bytes,
+                        new_data: bytes, source: str, language: str):
+    """
+    Re-parse `new_data` reusing `old_tree` (which is edited in place).
+    The changed region is the span between the longest common prefix and
+    suffix of the two buffers. Errors are re-collected only inside the ranges
+    Tree-sitter reports as changed; earlier errors elsewhere are shifted.
+    Returns (new_tree, errors).
+    """
+    start = _common_prefix_len(old_data, new_data)
+    max_suffix = min(len(old_data), len(new_data)) - start
+    suffix = _common_prefix_len(old_data[::-1][:max_suffix], new_data[::-1][:max_suffix])
+    old_end = len(old_data) - suffix
+    new_end = len(new_data) - suffix
+
+    old_tree.edit(
+        start_byte=start,
+        old_end_byte=old_end,
+        new_end_byte=new_end,
+        start_point=_point_at(old_data, start),
+        old_end_point=_point_at(old_data, old_end),
+        new_end_point=_point_at(new_data, new_end),
+    )
+    new_tree = parser.parse(new_data, old_tree)
+
+    delta = new_end - old_end
+    ranges = [(r.start_byte, r.end_byte) for r in old_tree.get_changed_ranges(new_tree)]
+    ranges.append((start, new_end))
+
+    kept = []
+    for err in old_errors:
+        if err.start_byte < 0:
+            continue
+        if err.end_byte <= start:
+            s, e = err.start_byte, err.end_byte
+        elif err.start_byte >= old_end:
+            s, e = err.start_byte + delta, err.end_byte + delta
+        else:
+            continue  # overlaps the edit
+        if _touches_any(s, e, ranges):
+            continue
+        row, col = _point_at(new_data, s)
+        kept.append(FileSyntaxError(err.message, err.parser, row + 1, col + 1, s, e))
+
+    fresh = collect_treesitter_errors(new_tree, source, language, ranges)
+    seen = {e.start_byte for e in fresh}
+    errors = fresh + [e for e in kept if e.start_byte not in seen]
+    errors.sort(key=lambda e: e.start_byte)
+    return new_tree, errors
+
+def _touches_any(start: int, end: int, ranges: List[Tuple[int, int]]) -> bool:
+    # Closed-interval test so zero-width (MISSING) nodes at a range boundary count
+    return any(start <= r_end and r_start <= end for r_start, r_end in ranges)
+
+def _common_prefix_len(a: bytes, b: bytes) -> int:
+    """Length of the common prefix, found by binary search over C-level slice compares."""
+    lo, hi = 0, min(len(a), len(b))
+    while lo < hi:
+        mid = (lo + hi + 1) // 2
+        if a[:mid] == b[:mid]:
+            lo = mid
+        else:
+            hi = mid - 1
+    return lo
+
+def _point_at(data: bytes, offset: int) -> Tuple[int, int]:
+    """(row, byte column) of a byte offset, as Tree-sitter counts them."""
+    row = data.count(b"\n", 0, offset)
+    return row, offset - (data.rfind(b"\n", 0, offset) + 1)
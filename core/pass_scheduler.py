@@ -0,0 +1,90 @@
+"""
+Pass Scheduler
+Runs analysis passes that declare their inputs by name. A pass becomes ready
+once every input is available (initial artifacts or the outputs of earlier
+passes). Each pass's output is stored under the pass name, and wall-clock
+time per pass is recorded in `timings`.
+
+Passes run one at a time on the calling thread, in registration order among
+those that are ready. The structural passes are pure-Python CPU work that
+would hold the GIL anyway, and several of them update shared state as they
+go (the analyzer's reachability engine, lazily built graph caches), so
+running them in threads would be unsafe without speeding anything up.
+"""
+
+import time
+from typing import Any, Callable, Dict, Iterable, List, Tuple
+
+class AnalysisPass:
+    """A named unit of analysis: fn(**inputs) -> output."""
+
+    __slots__ = ("name", "fn", "inputs")
+
+    def __init__(self, name: str, fn: Callable[..., Any], inputs: Iterable[str] = ()):
+        self.name = name
+        self.fn = fn
+        self.inputs = tuple(inputs)
+
+class PassScheduler:
+    """
+    Dependency-ordered, sequential execution of registered passes.
+    Inputs declare what a pass reads from other passes; they are not an
+    isolation guarantee, since passes may update objects they share.
+    """
+
+    def __init__(self):
+        self.passes: Dict[str, AnalysisPass] = {}
+        self.timings: Dict[str, float] = {}
+        self.wall_time = 0.0
+
+    def register(self, name: str, fn: Callable[..., Any], inputs: Iterable[str] = ()):
+        if name in self.passes:
+            raise ValueError(f"Pass already registered: {name}")
+        self.passes[name] = AnalysisPass(name, fn, inputs)
+
+    def run(self, artifacts: Dict[str, Any]) -> Dict[str, Any]:
+        """Run every pass; returns the initial artifacts plus each pass's output."""
+        available = dict(artifacts)
+        self._check(available)
+        self.timings = {}
+        start = time.perf_counter()
+        for name in self.order(available):
+            analysis_pass = self.passes[name]
+            kwargs = {i: available[i] for i in analysis_pass.inputs}
+            available[name], self.timings[name] = self._timed(analysis_pass, kwargs)
+        self.wall_time = time.perf_counter() - start
+        return available
+
+    def order(self, artifacts: Iterable[str]) -> List[str]:
+        """Pass names in execution order: each after every pass it reads."""
+        known = set(artifacts)
+        remaining = dict(self.passes)
+        ordered = []
+        while remaining:
+            name = next(n for n, p in remaining.items() if all(i in known for i in p.inputs))
+            ordered.append(name)
+            known.add(name)
+            del remaining[name]
+        return ordered
+
+    @staticmethod
+    def _timed(analysis_pass: AnalysisPass, kwargs: Dict[str, Any]) -> Tuple[Any, float]:
+        start = time.perf_counter()
+        result = analysis_pass.fn(**kwargs)
+        return result, time.perf_counter() - start
+
+    def _check(self, available: Dict[str, Any]):
+        """Every input must be an initial artifact or another pass, and there must be no cycle."""
+        known = set(available)
+        remaining = dict(self.passes)
+        for name, analysis_pass in remaining.items():
+            missing = [i for i in analysis_pass.inputs if i not in available and i not in self.passes]
+            if missing:
+                raise ValueError(f"Pass {name} has unknown inputs: {', '.join(missing)}")
+        while remaining:
+            ready = [n for n, p in remaining.items() if all(i in known for i in p.inputs)]
+            if not ready:
+                raise ValueError(f"Passes have cyclic inputs: {', '.join(sorted(remaining))}")
+            for name in ready:
+                known.add(name)
+                del remaining[name]
@@ -0,0 +1,211 @@
+"""
+Reachability
+Dead-code detection as reachability over the resolved call graph: a function
+is live if some entry point reaches it through call edges, dead otherwise.
+Entry points come from a configurable EntryPointPolicy (main functions, test
+naming and JUnit annotations, Spring annotations, decorators, module-level
+calls, optionally the public API). Liveness is one bit per symbol ID, packed
+into 64-bit words; added entries and edges propagate only from the nodes they make live, so
+adding a file costs time proportional to what it newly reaches.
+"""
+
+from array import array
+from fnmatch import fnmatchcase
+from pathlib import Path
+from typing import Dict, Iterable, List, Tuple
+from core.graph import CSRGraph
+from core.symbol_table import SymbolTableBuilder, module_name_for, qualify
+
+JUNIT_ANNOTATIONS = (
+    "Test", "ParameterizedTest", "RepeatedTest", "TestFactory", "TestTemplate",
+    "BeforeEach", "AfterEach", "BeforeAll", "AfterAll",
+    "Before", "After", "BeforeClass", "AfterClass",
+)
+
+# Methods Spring invokes through reflection or proxies
+SPRING_ANNOTATIONS = (
+    "Bean", "Autowired", "PostConstruct", "PreDestroy", "Scheduled", "EventListener",
+    "RequestMapping", "GetMapping", "PostMapping", "PutMapping", "DeleteMapping", "PatchMapping",
+    "ExceptionHandler", "ModelAttribute", "InitBinder",
+    "KafkaListener", "JmsListener", "RabbitListener",
+)
+
+class EntryPointPolicy:
+    """
+    Which functions are roots of the reachability analysis.
+      names:              exact function names (main, unittest fixtures)
+      patterns:           fnmatch patterns over names or qualified names (test*)
+      annotations:        Java annotations, by simple name (JUnit, Spring)
+      decorators:         any decorated Python function (frameworks call these)
+      dunders:            __init__, __str__, ... (invoked by the runtime)
+      module_calls:       functions called from module-level code
+      external_overrides: overrides of methods declared outside the codebase
+      public_api:         public Python names and public Java methods
+    """
+
+    DEFAULT_NAMES = ("main", "setUp", "tearDown", "setUpClass", "tearDownClass",
+                     "setUpModule", "tearDownModule")
+    DEFAULT_PATTERNS = ("test*",)
+
+    def __init__(self, names: Iterable[str] = DEFAULT_NAMES, patterns: Iterable[str] = DEFAULT_PATTERNS,
+                 annotations: Iterable[str] = JUNIT_ANNOTATIONS + SPRING_ANNOTATIONS,
+                 decorators: bool = True, dunders: bool = True, module_calls: bool = True,
+                 external_overrides: bool = True, public_api: bool = False):
+        self.names = set(names)
+        self.patterns = list(patterns)
+        self.annotations = set(annotations)
+        self.decorators = decorators
+        self.dunders = dunders
+        self.module_calls = module_calls
+        self.external_overrides = external_overrides
+        self.public_api = public_api
+
+    def matches(self, func: dict, qualified_name: str, is_java: bool) -> bool:
+        """Entry-point test for one function record from the structural parser."""
+        name = func["name"]
+        if name in self.names:
+            return True
+        if self.dunders and name.startswith("__") and name.endswith("__"):
+            return True
+        if self.decorators and func.get("decorators"):
+            return True
+        if self.annotations.intersection(func.get("annotations", ())):
+            return True
+        if any(fnmatchcase(name, p) or fnmatchcase(qualified_name, p) for p in self.patterns):
+            return True
+        if self.public_api:
+            if is_java:
+                return "public" in func.get("modifiers", ())
+            parent = func.get("parent_class") or ""
+            return not name.startswith("_") and not parent.startswith("_")
+        return False
+
+    def entry_points(self, parsed_files: Dict[Path, dict], symbol_table: SymbolTableBuilder,
+                     call_graph) -> List[int]:
+        """Symbol IDs of every entry point in the parsed files (call_graph must be built)."""
+        entries = []
+        for file_path, data in parsed_files.items():
+            entries.extend(self.file_entry_points(file_path, data, symbol_table, call_graph))
+        return entries
+
+    def file_entry_points(self, file_path: Path, data: dict, symbol_table: SymbolTableBuilder,
+                          call_graph) -> List[int]:
+        """Entry points of one file, including the functions its module-level code calls."""
+        entries = []
+        module_name = module_name_for(file_path, data)
+        is_java = Path(file_path).suffix.lower() == '.java'
+        for func in data.get("functions", []):
+            qualified_name = qualify(module_name, func["name"], func.get("parent_class"),
+                                     func.get("param_types"))
+            sid = symbol_table.id_of(qualified_name)
+            if sid < 0:
+                continue
+            if self.matches(func, qualified_name, is_java) or (
+                    self.external_overrides and self._overrides_external(func, data, is_java, call_graph)):
+                entries.append(sid)
+
+        if self.module_calls:
+            entries.extend(call_graph.module_entries.get(symbol_table.files.id_of(file_path), ()))
+        return entries
+
+    @staticmethod
+    def _overrides_external(func: dict, data: dict, is_java: bool, call_graph) -> bool:
+        """A method that may be called by a base class the analysis cannot see."""
+        parent = func.get("parent_class")
+        if not parent:
+            return False
+        if is_java:
+            if "Override" not in func.get("annotations", ()):
+                return False
+            # Known supertypes that declare the method resolve the call in-codebase
+            package = data.get("package", "")
+            owner = f"{package}.{parent}" if package else parent
+            hierarchy = call_graph.hierarchy
+            return not any(hierarchy.declaring_type(sup, func["name"])
+                           for sup in hierarchy.supertypes.get(owner, ()))
+        # Python: any base class that is not defined in the codebase
+        for cls in data.get("classes", []):
+            if cls["name"] == parent:
+                return any(base != "object" and not call_graph.symbol_table.find_symbols_by_name(base)
+                           for base in cls.get("bases", []))
+        return False
+
+class ReachabilityEngine:
+    """
+    Monotone liveness over symbol IDs. The base call graph is a CSRGraph;
+    edges added later (e.g. from one newly parsed file) are kept in a small
+    overlay, and only newly live nodes are pushed through the graph.
+    """
+
+    def __init__(self, graph: CSRGraph = None):
+        self.graph = graph or CSRGraph.empty()
+        self.live = array('Q', bytes(8 * ((self.graph.num_nodes + 63) >> 6)))  # bit v of word v >> 6
+        self._extra: Dict[int, List[int]] = {}  # overlay edges: source -> targets
+
+    def __contains__(self, node: int) -> bool:
+        return 0 <= node and (node >> 6) < len(self.live) and bool(self.live[node >> 6] >> (node & 63) & 1)
+
+    @property
+    def live_count(self) -> int:
+        return sum(bin(word).count("1") for word in self.live if word)
+
+    def _mark(self, node: int) -> bool:
+        """Set the live bit of `node`; False if it was already set."""
+        word, bit = node >> 6, 1 << (node & 63)
+        if self.live[word] & bit:
+            return False
+        self.live[word] |= bit
+        return True
+
+    def add_entries(self, entries: Iterable[int]) -> int:
+        """Mark entry points live; returns how many nodes became live."""
+        stack = []
+        for node in entries:
+            self._grow(node)
+            if self._mark(node):
+                stack.append(node)
+        return len(stack) + self._propagate(stack)
+
+    def add_edges(self, edges: Iterable[Tuple[int, int]]) -> int:
+        """Add call edges; only edges leaving a live node trigger propagation."""
+        stack = []
+        for source, target in edges:
+            self._grow(max(source, target))
+            self._extra.setdefault(source, []).append(target)
+            if source in self and self._mark(target):
+                stack.append(target)
+        return len(stack) + self._propagate(stack)
+
+    def add_file(self, entries: Iterable[int], edges: Iterable[Tuple[int, int]]) -> int:
+        """Incremental update for one file: its new edges, then its entry points."""
+        return self.add_edges(edges) + self.add_entries(entries)
+
+    def dead(self, nodes: Iterable[int]) -> List[int]:
+        return [node for node in nodes if node not in self]
+
+    def _grow(self, node: int):
+        words = (node >> 6) + 1
+        if words > len(self.live):
+            self.live.frombytes(bytes(8 * (words - len(self.live))))
+
+    def _propagate(self, stack: List[int]) -> int:
+        offsets, targets = self.graph.offsets, self.graph.targets
+        base_nodes = self.graph.num_nodes
+        live, extra = self.live, self._extra
+        marked = 0
+        while stack:
+            u = stack.pop()
+            successors = targets[offsets[u]:offsets[u + 1]] if u < base_nodes else ()
+            for v in successors:
+                word, bit = v >> 6, 1 << (v & 63)
+                if not live[word] & bit:
+                    live[word] |= bit
+                    marked += 1
+                    stack.append(v)
+            for v in extra.get(u, ()):
+                word, bit = v >> 6, 1 << (v & 63)
+                if not live[word] & bit:
+                    live[word] |= bit
+                    marked += 1
+                    stack.append(v)
+        return marked
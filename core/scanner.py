@@ -1,33 +1,158 @@
 """
 File Scanner
 Recursively discovers code files.
+
+Directories are listed with os.scandir on a thread pool, ignored paths
+(.gitignore / .ignore rules plus the built-in ignore set) are pruned before
+they are descended into, and files are yielded as soon as their directory
+has been listed so callers can start working before the walk is finished.
 """
 
 import os
+from concurrent.futures import ThreadPoolExecutor, wait, FIRST_COMPLETED
 from pathlib import Path
-from typing import List
+from typing import Dict, Iterator, List, Optional, Tuple
+
+try:
+    import pathspec
+    PATHSPEC_AVAILABLE = True
+except ImportError:
+    PATHSPEC_AVAILABLE = False
+
+IGNORE_FILES = ('.gitignore', '.ignore')
 
 class FileScanner:
-    def __init__(self, root_path: Path):
+    def __init__(self, root_path: Path, max_workers: Optional[int] = None, use_ignore_files: bool = True):
         self.root_path = root_path
         self.extensions = {'.py', '.c', '.cpp', '.cc', '.h', '.hpp', '.java'}
         self.ignore_dirs = {
             '.git', 'node_modules', '__pycache__', 'venv', '.venv',
             'build', 'dist', '.tox', '.mypy_cache', '.pytest_cache',
-            'target', 'bin', 'obj'
+            'target', 'bin', 'obj', '.analyzer_cache'
+        }
+        self.max_workers = max_workers or min(32, (os.cpu_count() or 1) + 4)
+        self.use_ignore_files = use_ignore_files and PATHSPEC_AVAILABLE
+        self._reset_counters()
+
+    def _reset_counters(self):
+        self.dirs_visited = 0
+        self.dirs_pruned = 0
+        self.files_visited = 0
+        self.files_pruned = 0
+        self.files_matched = 0
+
+    def stats(self) -> Dict[str, int]:
+        """Counters from the most recent walk."""
+        return {
+            "dirs_visited": self.dirs_visited,
+            "dirs_pruned": self.dirs_pruned,
+            "files_visited": self.files_visited,
+            "files_pruned": self.files_pruned,
+            "files_matched": self.files_matched,
         }
-    
+
     def scan(self) -> List[Path]:
-        """Scan for code files."""
-        code_files = []
-        
-        for root, dirs, files in os.walk(self.root_path):
-            # Skip common ignored directories
-            dirs[:] = [d for d in dirs if d not in self.ignore_dirs]
-            
-            for file in files:
-                file_path = Path(root) / file
-                if file_path.suffix in self.extensions:
-                    code_files.append(file_path)
-        
-        return code_files
+        """Scan for code files (sorted, for deterministic downstream ordering)."""
+        return sorted(self.iter_files())
+
+    def iter_files(self) -> Iterator[Path]:
+        """
+        Yield code files as directories are listed.
+        Order is not deterministic; use scan() when a stable order matters.
+        """
+        self._reset_counters()
+        root = str(self.root_path)
+
+        with ThreadPoolExecutor(max_workers=self.max_workers) as pool:
+            pending = {pool.submit(self._scan_dir, root, "", ())}
+            while pending:
+                done, pending = wait(pending, return_when=FIRST_COMPLETED)
+                for future in done:
+                    files, subdirs, counts = future.result()
+                    self.dirs_visited += 1
+                    self.files_visited += counts[0]
+                    self.files_pruned += counts[1]
+                    self.dirs_pruned += counts[2]
+                    for sub_path, sub_rel, sub_specs in subdirs:
+                        pending.add(pool.submit(self._scan_dir, sub_path, sub_rel, sub_specs))
+                    for file_path in files:
+                        self.files_matched += 1
+                        yield file_path
+
+    def _scan_dir(self, dir_path: str, rel_dir: str, parent_specs: Tuple) -> Tuple[List[Path], List[Tuple[str, str, Tuple]], Tuple[int, int, int]]:
+        """
+        List one directory. Runs on a worker thread and touches no shared state.
+        This directory's ignore files are read here too, and each subdirectory
+        is returned with the specs it inherits.
+        """
+        specs = self._load_specs(dir_path, rel_dir, parent_specs)
+        files = []
+        subdirs = []
+        files_visited = files_pruned = dirs_pruned = 0
+
+        try:
+            entries = list(os.scandir(dir_path))
+        except OSError:
+            return files, subdirs, (0, 0, 0)
+
+        for entry in entries:
+            rel = f"{rel_dir}/{entry.name}" if rel_dir else entry.name
+            try:
+                is_dir = entry.is_dir(follow_symlinks=False)
+            except OSError:
+                continue
+
+            if is_dir:
+                if entry.name in self.ignore_dirs or self._is_ignored(rel, True, specs):
+                    dirs_pruned += 1
+                    continue
+                subdirs.append((entry.path, rel, specs))
+                continue
+
+            files_visited += 1
+            if os.path.splitext(entry.name)[1] not in self.extensions:
+                continue
+            if self._is_ignored(rel, False, specs):
+                files_pruned += 1
+                continue
+            files.append(Path(entry.path))
+
+        return files, subdirs, (files_visited, files_pruned, dirs_pruned)
+
+    def _load_specs(self, dir_path: str, rel_dir: str, parent_specs: Tuple) -> Tuple:
+        """Extend inherited ignore specs with any ignore files found in this directory."""
+        if not self.use_ignore_files:
+            return parent_specs
+
+        lines = []
+        for name in IGNORE_FILES:
+            try:
+                with open(os.path.join(dir_path, name), 'r', encoding='utf-8', errors='replace') as f:
+                    lines.extend(f.read().splitlines())
+            except OSError:
+                continue
+
+        if not lines:
+            return parent_specs
+        spec = pathspec.PathSpec.from_lines('gitwildmatch', lines)
+        return parent_specs + ((rel_dir, spec),)
+
+    @staticmethod
+    def _is_ignored(rel_path: str, is_dir: bool, specs: Tuple) -> bool:
+        """Match a root-relative path against every ignore spec that applies to it."""
+        ignored = False
+        for base, spec in specs:
+            if base:
+                if not rel_path.startswith(base + "/"):
+                    continue
+                local = rel_path[len(base) + 1:]
+            else:
+                local = rel_path
+            if is_dir:
+                local += "/"
+            # Deeper ignore files override shallower ones, as in git
+            if spec.match_file(local):
+                ignored = True
+            elif ignored and any(p.include is False and p.match_file(local) for p in spec.patterns):
+                ignored = False
+        return ignored
@@ -0,0 +1,152 @@
+"""
+Source Cache
+Read-once store of file contents shared by every analysis phase.
+Entries are validated against (mtime, size) and evicted LRU under a byte cap.
+Symbol bodies are stored as byte spans and resolved against these buffers on demand.
+"""
+
+import hashlib
+import os
+import threading
+from collections import OrderedDict
+from pathlib import Path
+from typing import Dict, List, Tuple
+
+class SourceFile:
+    """Decoded text, raw UTF-8 bytes and content hash of one file."""
+
+    __slots__ = ("path", "text", "data", "content_hash", "mtime_ns", "size")
+
+    def __init__(self, path: Path, data: bytes, mtime_ns: int, size: int):
+        self.path = path
+        self.data = data
+        self.text = data.decode('utf-8')
+        self.content_hash = hashlib.blake2b(data, digest_size=16).hexdigest()
+        self.mtime_ns = mtime_ns
+        self.size = size
+
+    def slice(self, start_byte: int, end_byte: int) -> str:
+        """Decode a byte span of this file without copying the whole buffer."""
+        return bytes(memoryview(self.data)[start_byte:end_byte]).decode('utf-8', errors='replace')
+
+    @property
+    def footprint(self) -> int:
+        # bytes + a rough estimate for the decoded str
+        return len(self.data) * 2
+
+class FileTable:
+    """Dense integer IDs for file paths, with one shared Path object per file."""
+
+    def __init__(self):
+        self._ids: Dict[str, int] = {}
+        self._paths: List[Path] = []
+        self._lock = threading.Lock()
+
+    def id_of(self, file_path: Path) -> int:
+        key = str(file_path)
+        fid = self._ids.get(key)
+        if fid is not None:
+            return fid
+        with self._lock:
+            fid = self._ids.get(key)
+            if fid is None:
+                fid = len(self._paths)
+                self._ids[key] = fid
+                self._paths.append(Path(file_path))
+            return fid
+
+    def path_of(self, file_id: int) -> Path:
+        return self._paths[file_id]
+
+    def canonical(self, file_path: Path) -> Path:
+        """The shared Path instance for this file."""
+        return self._paths[self.id_of(file_path)]
+
+    def __len__(self) -> int:
+        return len(self._paths)
+
+class SourceCache:
+    """
+    LRU cache of SourceFile objects keyed by path.
+    A cached entry is reused only while the file's mtime and size are unchanged,
+    so files edited during a run (e.g. by the interactive fixer) are re-read.
+    """
+
+    DEFAULT_MAX_BYTES = 512 * 1024 * 1024
+
+    def __init__(self, max_bytes: int = DEFAULT_MAX_BYTES):
+        self.max_bytes = max_bytes
+        self._entries: "OrderedDict[str, SourceFile]" = OrderedDict()
+        self._total_bytes = 0
+        self._lock = threading.Lock()
+        self.hits = 0
+        self.misses = 0
+        self.evictions = 0
+        # Dense file IDs, so spans can be stored as (file_id, start_byte, end_byte)
+        self.files = FileTable()
+
+    def file_id(self, file_path: Path) -> int:
+        return self.files.id_of(file_path)
+
+    def path_of(self, file_id: int) -> Path:
+        return self.files.path_of(file_id)
+
+    def span_text(self, span: Tuple[int, int, int]) -> str:
+        """
+        Resolve a (file_id, start_byte, end_byte) span against the file's current bytes.
+        Spans are only meaningful while the file is unchanged since it was parsed.
+        """
+        file_id, start_byte, end_byte = span
+        return self.get(self.files.path_of(file_id)).slice(start_byte, end_byte)
+
+    def get(self, file_path: Path) -> SourceFile:
+        """Return the cached source, reading it from disk on first use or if it changed."""
+        key = str(file_path)
+        st = os.stat(key)
+
+        with self._lock:
+            entry = self._entries.get(key)
+            if entry is not None and entry.mtime_ns == st.st_mtime_ns and entry.size == st.st_size:
+                self._entries.move_to_end(key)
+                self.hits += 1
+                return entry
+
+        with open(key, 'rb') as f:
+            data = f.read()
+        entry = SourceFile(Path(file_path), data, st.st_mtime_ns, st.st_size)
+
+        with self._lock:
+            self.misses += 1
+            old = self._entries.pop(key, None)
+            if old is not None:
+                self._total_bytes -= old.footprint
+            self._entries[key] = entry
+            self._total_bytes += entry.footprint
+            self._evict()
+        return entry
+
+    def read_text(self, file_path: Path) -> str:
+        return self.get(file_path).text
+
+    def invalidate(self, file_path: Path):
+        with self._lock:
+            old = self._entries.pop(str(file_path), None)
+            if old is not None:
+                self._total_bytes -= old.footprint
+
+    def stats(self) -> Dict[str, int]:
+        with self._lock:
+            return {
+                "entries": len(self._entries),
+                "bytes": self._total_bytes,
+                "hits": self.hits,
+                "misses": self.misses,
+                "evictions": self.evictions,
+            }
+
+    def _evict(self):
+        # Always keep the most recent entry, even if it alone exceeds the cap
+        while self._total_bytes > self.max_bytes and len(self._entries) > 1:
+            _, old = self._entries.popitem(last=False)
+            self._total_bytes -= old.footprint
+            self.evictions += 1
@@ -3,9 +3,11 @@ Symbol Table Builder
 Creates a global index of all symbols for cross-file analysis.
 """
 
+import sys
 from pathlib import Path
-from typing import Dict, List
+from typing import Dict, Iterable, List, Optional, Tuple
 from enum import Enum
+from core.source_cache import SourceCache, FileTable
 
 class SymbolType(Enum):
     FUNCTION = "function"
@@ -13,7 +15,40 @@ class SymbolType(Enum):
     METHOD = "method"
     VARIABLE = "variable"
 
+_NO_ATTRIBUTES: Tuple[str, ...] = ()
+
+def module_name_for(file_path: Path, data: dict) -> str:
+    """
+    Module part of qualified names: the package for Java (so classes are keyed
+    by their fully qualified name), the file stem otherwise.
+    """
+    if Path(file_path).suffix.lower() == '.java':
+        return data.get("package", "")
+    return Path(file_path).stem
+
+def qualify(module_name: str, name: str, parent_name: str = "", param_types: List[str] = None) -> str:
+    """
+    Qualified symbol name: module.Class.name or module.name.
+    Java methods append their erased parameter types, e.g. com.acme.Util.add(int,int),
+    so overloads do not overwrite each other.
+    """
+    qualified_name = ".".join(part for part in (module_name, parent_name, name) if part)
+    if param_types is not None:
+        qualified_name += f"({','.join(param_types)})"
+    return qualified_name
+
 class Symbol:
+    """
+    Compact symbol record. Slots instead of a __dict__, interned strings, and
+    one shared Path per file (assigned by SymbolTableBuilder via its FileTable).
+    `id` is a dense integer assigned on insertion; graphs are keyed by it.
+    """
+
+    __slots__ = (
+        "id", "name", "type", "file", "file_id", "line", "signature", "docstring",
+        "_body_code", "span", "_source", "parent_name", "attributes", "qualified_name"
+    )
+
     def __init__(
         self,
         name: str,
@@ -24,45 +59,181 @@ class Symbol:
         docstring: str = "",
         body_code: str = "",
         parent_name: str = "",
-        attributes: List[str] = None
+        attributes: List[str] = None,
+        span: Tuple[int, int, int] = None,
+        source: SourceCache = None
     ):
-        self.name = name
+        self.id = -1        # Set by table builder
+        self.file_id = -1   # Set by table builder
+        self.name = sys.intern(name)
         self.type = symbol_type
         self.file = file_path
         self.line = line
-        self.signature = signature
+        self.signature = sys.intern(signature)
         self.docstring = docstring
-        self.body_code = body_code
-        self.parent_name = parent_name
-        self.attributes = attributes or []
+        self._body_code = body_code
+        # (file_id, start_byte, end_byte) into `source`; the body text is only
+        # materialized when a consumer (LLM prompt, fingerprint) asks for it
+        self.span = span
+        self._source = source
+        self.parent_name = sys.intern(parent_name) if parent_name else ""
+        self.attributes = attributes or _NO_ATTRIBUTES
         self.qualified_name = ""  # Set by table builder
 
+    @property
+    def body_code(self) -> str:
+        if self._body_code or self.span is None or self._source is None:
+            return self._body_code
+        try:
+            return self._source.span_text(self.span)
+        except OSError:
+            return ""
+
 class SymbolTableBuilder:
     """
     Builds a comprehensive symbol table from parsed files.
+    Secondary indexes (name, file, parent class, type) are maintained on every
+    insert/remove so lookups never scan the whole table.
     """
     
-    def __init__(self):
+    def __init__(self, files: FileTable = None):
         self.symbols: Dict[str, Symbol] = {}
+        # Dense symbol IDs (None once removed) and the shared file-ID table
+        self._by_id: List[Optional[Symbol]] = []
+        # Qualified name -> ID freed by remove_file(); a re-added symbol takes it back,
+        # so graphs keyed by ID stay valid across an edit of its file
+        self._released: Dict[str, int] = {}
+        self.files = files or FileTable()
+        # index key -> {qualified_name: Symbol}; dicts keep insertion order
+        self._by_name: Dict[str, Dict[str, Symbol]] = {}
+        self._by_file: Dict[Path, Dict[str, Symbol]] = {}
+        self._by_parent: Dict[str, Dict[str, Symbol]] = {}
+        self._by_type: Dict[SymbolType, Dict[str, Symbol]] = {}
+        # Qualified name without overload suffix (e.g. com.acme.Util.add) -> overloads
+        self._by_fqn: Dict[str, Dict[str, Symbol]] = {}
     
-    def add_symbol(self, symbol: Symbol, module_name: str):
+    def add_symbol(self, symbol: Symbol, module_name: str, param_types: List[str] = None):
         """
         Add symbol with qualified name.
-        Format: module.class.method or module.function
+        Format: module.class.method or module.function (see qualify())
         """
-        if symbol.parent_name:
-            symbol.qualified_name = f"{module_name}.{symbol.parent_name}.{symbol.name}"
+        symbol.qualified_name = sys.intern(qualify(module_name, symbol.name, symbol.parent_name, param_types))
+        
+        symbol.file_id = self.files.id_of(symbol.file)
+        symbol.file = self.files.path_of(symbol.file_id)
+        
+        previous = self.symbols.get(symbol.qualified_name)
+        released = self._released.pop(symbol.qualified_name, None)
+        if previous is not None:
+            self._unindex(previous)
+            symbol.id = previous.id
+        elif released is not None:
+            symbol.id = released
         else:
-            symbol.qualified_name = f"{module_name}.{symbol.name}"
+            symbol.id = len(self._by_id)
+            self._by_id.append(None)
+        self._by_id[symbol.id] = symbol
         self.symbols[symbol.qualified_name] = symbol
+        self._index(symbol)
+    
+    def add_symbols(self, entries: Iterable[tuple]):
+        """Bulk insert of (symbol, module_name[, param_types]) tuples."""
+        for entry in entries:
+            self.add_symbol(*entry)
+    
+    def remove_file(self, file_path: Path) -> List[Symbol]:
+        """Remove every symbol defined in a file; returns the removed symbols."""
+        removed = list(self._by_file.get(file_path, {}).values())
+        for symbol in removed:
+            if self.symbols.get(symbol.qualified_name) is symbol:
+                del self.symbols[symbol.qualified_name]
+                self._released[symbol.qualified_name] = symbol.id
+            self._unindex(symbol)
+            self._by_id[symbol.id] = None
+        return removed
+    
+    @property
+    def released(self) -> int:
+        """Removed symbols whose ID is still reserved for their qualified name."""
+        return len(self._released)
+    
+    def compact(self) -> bool:
+        """
+        Renumber the live symbols densely, keeping their relative order, and
+        drop reserved IDs. Every graph keyed by symbol ID must be rebuilt
+        afterwards. Returns False if there was nothing to reclaim.
+        """
+        self._released.clear()
+        live = [symbol for symbol in self._by_id if symbol is not None]
+        if len(live) == len(self._by_id):
+            return False
+        for symbol_id, symbol in enumerate(live):
+            symbol.id = symbol_id
+        self._by_id = live
+        return True
     
     def get_symbol(self, qualified_name: str) -> Symbol:
         return self.symbols.get(qualified_name)
     
+    def get_by_id(self, symbol_id: int) -> Optional[Symbol]:
+        return self._by_id[symbol_id]
+    
+    def id_of(self, qualified_name: str) -> int:
+        """Dense ID of a symbol, or -1 if unknown."""
+        symbol = self.symbols.get(qualified_name)
+        return symbol.id if symbol is not None else -1
+    
+    @property
+    def id_capacity(self) -> int:
+        """Upper bound (exclusive) of assigned symbol IDs, for sizing arrays/bitsets."""
+        return len(self._by_id)
+    
+    def find_symbols_by_fqn(self, fqn: str) -> List[Symbol]:
+        """All overloads of a fully qualified name (a single symbol outside Java)."""
+        return list(self._by_fqn.get(fqn, {}).values())
+    
     def find_symbols_by_name(self, name: str) -> List[Symbol]:
         """Find all symbols with given name (across modules)."""
-        return [s for qn, s in self.symbols.items() if s.name == name]
+        return list(self._by_name.get(name, {}).values())
     
     def get_symbols_in_file(self, file_path: Path) -> List[Symbol]:
         """Get all symbols defined in a file."""
-        return [s for s in self.symbols.values() if s.file == file_path]
+        return list(self._by_file.get(file_path, {}).values())
+    
+    def get_files(self) -> List[Path]:
+        """Files that currently define at least one symbol."""
+        return list(self._by_file.keys())
+    
+    def get_symbols_in_class(self, parent_name: str) -> List[Symbol]:
+        """Get all members (methods, nested symbols) recorded under a class name."""
+        return list(self._by_parent.get(parent_name, {}).values())
+    
+    def get_symbols_by_type(self, symbol_type: SymbolType) -> List[Symbol]:
+        return list(self._by_type.get(symbol_type, {}).values())
+    
+    def _index(self, symbol: Symbol):
+        qn = symbol.qualified_name
+        self._by_name.setdefault(symbol.name, {})[qn] = symbol
+        self._by_file.setdefault(symbol.file, {})[qn] = symbol
+        self._by_type.setdefault(symbol.type, {})[qn] = symbol
+        self._by_fqn.setdefault(strip_overload(qn), {})[qn] = symbol
+        if symbol.parent_name:
+            self._by_parent.setdefault(symbol.parent_name, {})[qn] = symbol
+    
+    def _unindex(self, symbol: Symbol):
+        qn = symbol.qualified_name
+        keyed = [(self._by_name, symbol.name), (self._by_file, symbol.file), (self._by_type, symbol.type),
+                 (self._by_fqn, strip_overload(qn))]
+        if symbol.parent_name:
+            keyed.append((self._by_parent, symbol.parent_name))
+        for index, key in keyed:
+            bucket = index.get(key)
+            if bucket is not None and bucket.get(qn) is symbol:
+                del bucket[qn]
+                if not bucket:
+                    del index[key]
+
+def strip_overload(qualified_name: str) -> str:
+    """com.acme.Util.add(int,int) -> com.acme.Util.add"""
+    paren = qualified_name.find("(")
+    return qualified_name if paren < 0 else qualified_name[:paren]
@@ -0,0 +1,78 @@
+"""
+Tree Watcher
+Polling change detection for watch mode (no inotify dependency).
+Each poll stats the known code files and the directories that contain them;
+a directory whose mtime moved (file added, removed or renamed) triggers a
+rescan through the FileScanner, so .gitignore rules still apply. A full
+rescan also runs every `rescan_every` polls to pick up files created in
+directories that had no code files before.
+"""
+
+import os
+from pathlib import Path
+from typing import Dict, List, Optional, Tuple
+from core.scanner import FileScanner
+
+Stamp = Tuple[int, int]  # (mtime_ns, size)
+
+class TreeWatcher:
+    """Snapshot of (mtime, size) per code file; poll() reports what changed since the last call."""
+
+    def __init__(self, scanner: FileScanner, rescan_every: int = 10):
+        self.scanner = scanner
+        self.rescan_every = max(1, rescan_every)
+        self.files: Dict[Path, Stamp] = {}
+        self.dirs: Dict[str, int] = {}  # directory -> mtime_ns
+        self._polls = 0
+
+    def start(self) -> List[Path]:
+        """Take the initial snapshot; returns the code files found (sorted)."""
+        self.files = {}
+        for file_path in self.scanner.iter_files():
+            stamp = self._stamp(file_path)
+            if stamp is not None:
+                self.files[file_path] = stamp
+        self.dirs = self._dir_stamps()
+        return sorted(self.files)
+
+    def poll(self) -> Tuple[List[Path], List[Path]]:
+        """(added or modified files, removed files) since the previous poll."""
+        self._polls += 1
+        changed, removed = [], []
+        for file_path, stamp in list(self.files.items()):
+            current = self._stamp(file_path)
+            if current is None:
+                removed.append(file_path)
+                del self.files[file_path]
+            elif current != stamp:
+                changed.append(file_path)
+                self.files[file_path] = current
+
+        dirs = self._dir_stamps()
+        if dirs != self.dirs or self._polls % self.rescan_every == 0:
+            for file_path in self.scanner.iter_files():
+                if file_path not in self.files:
+                    stamp = self._stamp(file_path)
+                    if stamp is not None:
+                        self.files[file_path] = stamp
+                        changed.append(file_path)
+            dirs = self._dir_stamps()
+        self.dirs = dirs
+        return sorted(changed), sorted(removed)
+
+    def _dir_stamps(self) -> Dict[str, int]:
+        stamps = {}
+        for directory in {str(p.parent) for p in self.files} | {str(self.scanner.root_path)}:
+            try:
+                stamps[directory] = os.stat(directory).st_mtime_ns
+            except OSError:
+                stamps[directory] = -1
+        return stamps
+
+    @staticmethod
+    def _stamp(file_path: Path) -> Optional[Stamp]:
+        try:
+            st = os.stat(file_path)
+        except OSError:
+            return None
+        return st.st_mtime_ns, st.st_size
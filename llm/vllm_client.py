@@ -1,47 +1,175 @@
 """
 vLLM Client
 Interfaces with local Qwen2.5-Coder via OpenAI-compatible API.
+
+Requests go through a scheduler:
+  - at most `max_in_flight` requests are sent to the server at once
+  - waiting requests are admitted by priority (lower first), FIFO within a priority,
+    so interactive fixes overtake queued batch audits
+  - each request has a deadline covering queueing, attempts and backoff
+  - transient failures (connection, timeout, 429, 5xx) are retried with
+    exponential backoff and jitter; the slot is released while backing off
+Queue times and outcomes are collected for `stats()`.
 """
 
-from typing import Optional
-from openai import AsyncOpenAI
+from typing import Dict, List, Optional
+from collections import deque
+from openai import AsyncOpenAI, APIConnectionError, RateLimitError, InternalServerError
+import asyncio
 import hashlib
+import heapq
+import itertools
 import json
+import random
+import time
+
+PRIORITY_INTERACTIVE = 0
+PRIORITY_BATCH = 10
+
+class _PriorityWindow:
+    """Async semaphore whose waiters are admitted lowest priority value first."""
+
+    def __init__(self, limit: int):
+        self.limit = max(1, limit)
+        self.active = 0
+        self._waiters: List[tuple] = []  # (priority, seq, future)
+        self._seq = itertools.count()
+
+    @property
+    def queued(self) -> int:
+        return sum(1 for _, _, fut in self._waiters if not fut.done())
+
+    async def acquire(self, priority: int):
+        # Drop waiters that gave up (deadline or cancellation) from the head
+        while self._waiters and self._waiters[0][2].done():
+            heapq.heappop(self._waiters)
+        if self.active < self.limit and not self._waiters:
+            self.active += 1
+            return
+        fut = asyncio.get_running_loop().create_future()
+        heapq.heappush(self._waiters, (priority, next(self._seq), fut))
+        try:
+            await fut
+        except asyncio.CancelledError:
+            if fut.done() and not fut.cancelled():
+                # The slot was handed over as we were cancelled: pass it on
+                self.release()
+            raise
+
+    def release(self):
+        while self._waiters:
+            _, _, fut = heapq.heappop(self._waiters)
+            if not fut.done():
+                fut.set_result(None)  # Slot moves to the waiter; active count unchanged
+                return
+        self.active -= 1
 
 class VLLMClient:
-    def __init__(self, base_url: str = "http://localhost:8000/v1", model: str = "Qwen/Qwen2.5-Coder-7B-Instruct"):
+    def __init__(self, base_url: str = "http://localhost:8000/v1", model: str = "Qwen/Qwen2.5-Coder-7B-Instruct",
+                 max_in_flight: int = 16, request_timeout: float = 300.0, max_retries: int = 3,
+                 backoff: float = 0.5):
         self.client = AsyncOpenAI(
             base_url=base_url,
-            api_key="EMPTY"
+            api_key="EMPTY",
+            max_retries=0  # Retries are scheduled here, outside the in-flight window
         )
         self.model = model
         self.cache = {}  # Disabled persistent caching per user request
-    
+        self.request_timeout = request_timeout
+        self.max_retries = max_retries
+        self.backoff = backoff
+        self._window = _PriorityWindow(max_in_flight)
+        self._queue_times = deque(maxlen=4096)
+        self.metrics = {"requests": 0, "completed": 0, "failed": 0, "retries": 0,
+                        "deadline_exceeded": 0, "cache_hits": 0}
+
     async def generate_completion(
-        self, 
+        self,
         prompt: str,
         temperature: float = 0.2,
-        max_tokens: int = 4096
+        max_tokens: int = 4096,
+        priority: int = PRIORITY_INTERACTIVE,
+        timeout: Optional[float] = None
     ) -> str:
-        """Generate completion with caching."""
-        
+        """
+        Generate completion with caching. `timeout` (default: request_timeout)
+        is the deadline in seconds from this call, including time spent queued.
+        """
+
         # Cache key based on prompt hash
         cache_key = hashlib.md5(prompt.encode()).hexdigest()
-        
+
         if cache_key in self.cache:
+            self.metrics["cache_hits"] += 1
             return self.cache[cache_key]
-        
-        try:
-            response = await self.client.chat.completions.create(
-                model=self.model,
-                messages=[{"role": "user", "content": prompt}],
-                temperature=temperature,
-                max_tokens=max_tokens
-            )
-            
-            result = response.choices[0].message.content
+
+        self.metrics["requests"] += 1
+        timeout = timeout or self.request_timeout
+        deadline = time.monotonic() + timeout
+        attempt = 0
+        while True:
+            try:
+                result = await self._attempt(prompt, temperature, max_tokens, priority, deadline)
+            except asyncio.TimeoutError:
+                self.metrics["deadline_exceeded"] += 1
+                self.metrics["failed"] += 1
+                raise RuntimeError(f"vLLM request exceeded its {timeout:g}s deadline")
+            except Exception as e:
+                delay = self.backoff * (2 ** attempt) * random.uniform(0.5, 1.0)
+                if attempt >= self.max_retries or not self._is_transient(e) \
+                        or time.monotonic() + delay >= deadline:
+                    self.metrics["failed"] += 1
+                    raise RuntimeError(f"vLLM request failed: {e}")
+                attempt += 1
+                self.metrics["retries"] += 1
+                await asyncio.sleep(delay)
+                continue
+
+            self.metrics["completed"] += 1
             self.cache[cache_key] = result
             return result
-            
-        except Exception as e:
-            raise RuntimeError(f"vLLM request failed: {e}")
+
+    async def _attempt(self, prompt: str, temperature: float, max_tokens: int, priority: int,
+                       deadline: float) -> str:
+        """One request: wait for a slot, then call the server, both within the deadline."""
+        queued_at = time.monotonic()
+        await asyncio.wait_for(self._window.acquire(priority), max(0.0, deadline - queued_at))
+        self._queue_times.append(time.monotonic() - queued_at)
+        try:
+            response = await asyncio.wait_for(
+                self.client.chat.completions.create(
+                    model=self.model,
+                    messages=[{"role": "user", "content": prompt}],
+                    temperature=temperature,
+                    max_tokens=max_tokens
+                ),
+                max(0.0, deadline - time.monotonic())
+            )
+            return response.choices[0].message.content
+        finally:
+            self._window.release()
+
+    @staticmethod
+    def _is_transient(error: Exception) -> bool:
+        """Connection failures, server timeouts, rate limiting and 5xx responses."""
+        if isinstance(error, (APIConnectionError, RateLimitError, InternalServerError)):
+            return True
+        status = getattr(error, "status_code", None) or 0
+        return status in (408, 409, 429) or status >= 500
+
+    def stats(self) -> Dict[str, float]:
+        """Request outcomes plus queue-time percentiles (seconds) over recent requests."""
+        waits = sorted(self._queue_times)
+
+        def percentile(p: float) -> float:
+            return round(waits[min(len(waits) - 1, int(p * len(waits)))], 4) if waits else 0.0
+
+        return {
+            **self.metrics,
+            "in_flight": self._window.active,
+            "queued": self._window.queued,
+            "queue_time_avg": round(sum(waits) / len(waits), 4) if waits else 0.0,
+            "queue_time_p50": percentile(0.50),
+            "queue_time_p95": percentile(0.95),
+            "queue_time_max": round(waits[-1], 4) if waits else 0.0,
+        }
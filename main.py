@@ -4,8 +4,11 @@ Advanced Code Analyzer - Main CLI
 
 import typer
 import asyncio
+import contextlib
 import os
+import sys
 from pathlib import Path
+from typing import List
 from rich.console import Console, Group
 from rich.table import Table
 from rich.panel import Panel
@@ -28,6 +31,18 @@ def analyze(
     output: Path = typer.Option("report.json", "--output", "-o", help="Output report path"),
     vllm_url: str = typer.Option("http://127.0.0.1:8000/v1", "--vllm-url", help="LLM server URL (OpenAI-compatible)"),
     generate_fixes: bool = typer.Option(True, "--fixes/--no-fixes", "--generate-fixes", help="Generate code fixes"),
+    use_cache: bool = typer.Option(True, "--cache/--no-cache", help="Reuse parse results from .analyzer_cache/ for unchanged files"),
+    jobs: int = typer.Option(1, "--jobs", "-j", help="Worker processes for structural parsing (0 = one per CPU core)"),
+    max_cycles: int = typer.Option(3, "--max-cycles", help="Circular-import cycles reported per strongly connected group of files"),
+    java_dispatch: str = typer.Option("rta", "--java-dispatch", help="Java virtual-call resolution: rta, cha or name"),
+    entry: List[str] = typer.Option(None, "--entry", help="Extra dead-code entry points (name or qualified-name pattern, repeatable)"),
+    public_api: bool = typer.Option(False, "--public-api", help="Treat public functions/methods as dead-code entry points (libraries)"),
+    since: str = typer.Option(None, "--since", help="Only re-check files and functions changed since this git ref"),
+    watch: bool = typer.Option(False, "--watch", help="Keep running: re-analyze files as they change (structural checks, no LLM)"),
+    watch_interval: float = typer.Option(0.5, "--watch-interval", help="Seconds between change polls in --watch mode"),
+    latency_budget: float = typer.Option(2.0, "--latency-budget", help="Warn when a --watch update takes longer than this (seconds)"),
+    batch: bool = typer.Option(False, "--batch", help="Headless run: no menu or prompts, concurrent LLM audits, findings written to --output"),
+    max_in_flight: int = typer.Option(16, "--max-in-flight", help="Concurrent LLM audit requests in --batch mode"),
 
 ):
     """
@@ -37,6 +52,20 @@ def analyze(
     if not folder.exists():
         console.print(f"[red]Error: Folder {folder} does not exist[/red]")
         raise typer.Exit(1)
+    if java_dispatch not in ("rta", "cha", "name"):
+        console.print(f"[red]Error: --java-dispatch must be one of rta, cha, name[/red]")
+        raise typer.Exit(1)
+    
+    if watch:
+        run_watch(folder, output, use_cache=use_cache, jobs=jobs or (os.cpu_count() or 1),
+                  max_cycles=max_cycles, java_dispatch=java_dispatch, entry_patterns=entry or [],
+                  public_api=public_api, interval=watch_interval, latency_budget=latency_budget)
+        return
+    if batch:
+        asyncio.run(run_batch(folder, output, vllm_url, use_cache=use_cache, jobs=jobs or (os.cpu_count() or 1),
+                              max_cycles=max_cycles, java_dispatch=java_dispatch, entry_patterns=entry or [],
+                              public_api=public_api, since=since, max_in_flight=max_in_flight))
+        return
     
     # Interactive Menu
     menu = Table.grid(padding=(0, 1))
@@ -77,16 +106,289 @@ def analyze(
     console.print(f"\n[bold blue]🔍 Starting {analysis_mode.upper()} Analysis:[/bold blue] {folder}\n")
     
     # Run async analysis
-    asyncio.run(run_analysis(folder, output, vllm_url, generate_fixes, analysis_mode))
+    asyncio.run(run_analysis(folder, output, vllm_url, generate_fixes, analysis_mode, use_cache=use_cache,
+                             jobs=jobs or (os.cpu_count() or 1), max_cycles=max_cycles,
+                             java_dispatch=java_dispatch, entry_patterns=entry or [], public_api=public_api,
+                             since=since))
+
+def run_watch(folder: Path, output: Path, use_cache: bool = True, jobs: int = 1, max_cycles: int = 3,
+              java_dispatch: str = "rta", entry_patterns: List[str] = (), public_api: bool = False,
+              interval: float = 0.5, latency_budget: float = 2.0):
+    """
+    Watch mode: analyze once, then keep the source cache, parse cache, symbol
+    table and call graph in memory and patch them as files change. Findings for
+    the changed files are printed as each update completes, and the full result
+    set is rewritten to `output`.
+    """
+    from core.scanner import FileScanner
+    from core.source_cache import SourceCache
+    from core.parsed_unit import UnitParser
+    from core.parse_cache import ParseCache
+    from core.reachability import EntryPointPolicy
+    from core.watcher import TreeWatcher
+    from core.incremental import called_names
+    from analyzers.structural_analyzer import StructuralAnalyzer
+    
+    source_cache = SourceCache()
+    unit_parser = UnitParser(source_cache)
+    parse_cache = ParseCache(folder) if use_cache else None
+    entry_policy = EntryPointPolicy(patterns=EntryPointPolicy.DEFAULT_PATTERNS + tuple(entry_patterns),
+                                    public_api=public_api)
+    struct_analyzer = StructuralAnalyzer(source_cache=source_cache, unit_parser=unit_parser,
+                                         parse_cache=parse_cache, jobs=jobs, max_cycles_per_scc=max_cycles,
+                                         include_dirs=[folder, folder / "include"],
+                                         java_dispatch=java_dispatch, entry_policy=entry_policy)
+    watcher = TreeWatcher(FileScanner(folder))
+    syntax_errors = {}
+    
+    def check_syntax(files: List[Path]) -> List[Path]:
+        """Record syntax errors for `files` and return the valid ones (parsed once, structure kept)."""
+        valid = []
+        for file_path, is_valid, errors in struct_analyzer.check_syntax(files):
+            if is_valid:
+                syntax_errors.pop(str(file_path), None)
+                valid.append(file_path)
+            else:
+                syntax_errors[str(file_path)] = [
+                    {"line": e.line, "column": e.column, "message": e.message, "parser": e.parser}
+                    for e in errors
+                ]
+        return valid
+    
+    started = time.perf_counter()
+    files = watcher.start()
+    results = struct_analyzer.analyze_codebase(check_syntax(files))
+    _write_watch_report(output, results, syntax_errors)
+    console.print(f"[bold green]Watching {folder}[/bold green] [dim]({len(files)} files, initial analysis "
+                  f"{time.perf_counter() - started:.2f}s; Ctrl+C to stop)[/dim]\n")
+    
+    try:
+        while True:
+            time.sleep(interval)
+            changed, removed = watcher.poll()
+            if not changed and not removed:
+                continue
+            
+            started = time.perf_counter()
+            for file_path in changed:
+                source_cache.invalidate(file_path)
+            valid = check_syntax(changed)
+            invalid = [file_path for file_path in changed if str(file_path) in syntax_errors]
+            for file_path in removed:
+                syntax_errors.pop(str(file_path), None)
+            # Functions the touched files called before or after the edit may have lost a caller
+            called = set()
+            for file_path in changed + removed:
+                called |= called_names(struct_analyzer.file_data_map.get(str(file_path), {}))
+            # Files that stopped parsing drop out of the symbol table until they are fixed
+            results = struct_analyzer.update_files(valid, removed + invalid)
+            for file_path in valid:
+                called |= called_names(struct_analyzer.file_data_map.get(str(file_path), {}))
+            elapsed = time.perf_counter() - started
+            
+            _print_watch_update(changed, removed, results, syntax_errors, elapsed, called)
+            _write_watch_report(output, results, syntax_errors)
+            if elapsed > latency_budget:
+                console.print(f"  [yellow]⚠ update took {elapsed:.2f}s (budget {latency_budget:.2f}s)[/yellow]")
+    except KeyboardInterrupt:
+        console.print("\n[dim]Watch stopped.[/dim]")
+    finally:
+        struct_analyzer.close()
+        if parse_cache:
+            parse_cache.close()
+
+def _print_watch_update(changed: List[Path], removed: List[Path], results: dict, syntax_errors: dict,
+                        elapsed: float, called: set = frozenset()):
+    """Findings for the files of one watch update (and those whose inputs they changed)."""
+    from core.incremental import findings_touching
+    stamp = time.strftime("%H:%M:%S")
+    touched = set(changed)
+    findings = findings_touching(touched, results, called)
+    console.print(f"[bold]{stamp}[/bold] {len(changed)} changed, {len(removed)} removed "
+                  f"[dim]({elapsed:.2f}s)[/dim]")
+    for file_path in removed:
+        console.print(f"  [dim]- {file_path.name} removed[/dim]")
+    for file_path in changed:
+        errors = syntax_errors.get(str(file_path))
+        if errors:
+            for err in errors:
+                console.print(f"  [red]✗ {file_path.name}:{err['line']}:{err['column']}[/red] {err['message']}")
+        else:
+            console.print(f"  [green]✓ {file_path.name}[/green]")
+    for sym in findings["dead_code"]:
+        console.print(f"    • uncalled [yellow]{sym.name}[/yellow] ({sym.file.name}:{sym.line})")
+    for var in findings["unused_variables"]:
+        console.print(f"    • unused [yellow]{var['name']}[/yellow] ({var['file']}:{var['line']})")
+    for cycle in findings["function_cycles"]:
+        console.print("    • recursion " + " → ".join(sym.name for sym in cycle + cycle[:1]))
+    for cycle in findings["circular_dependencies"]:
+        console.print("    • circular import " + " → ".join(cycle))
+
+def _write_watch_report(output: Path, results: dict, syntax_errors: dict):
+    """Rewrite the watch report atomically (readers never see a partial file)."""
+    report = {
+        "updated": time.strftime("%Y-%m-%dT%H:%M:%S"),
+        "syntax_errors": syntax_errors,
+        "circular_dependencies": results["circular_dependencies"],
+        "function_cycles": [[sym.qualified_name for sym in cycle] for cycle in results["function_cycles"]],
+        "dead_code": [{"name": sym.qualified_name, "file": str(sym.file), "line": sym.line}
+                      for sym in results["dead_code"]],
+        "unused_variables": results["unused_variables"],
+        "pass_timings": results.get("pass_timings", {}),
+    }
+    tmp = Path(str(output) + ".tmp")
+    with open(tmp, "w", encoding="utf-8") as f:
+        json.dump(report, f, indent=2)
+    os.replace(tmp, output)
+
+def _names_called_by(changes, struct_analyzer) -> set:
+    """Names the changed and deleted files call, at the ref and in the working tree."""
+    from core.parsed_unit import LANG_BY_EXT
+    from core.incremental import previous_versions, called_names
+    names = set()
+    for file_path, text in previous_versions(changes).items():
+        if file_path.suffix.lower() in LANG_BY_EXT:
+            unit = struct_analyzer.unit_parser.parse_source(text, file_path.suffix, file_path)
+            names |= called_names(struct_analyzer.parser.parse_unit(unit))
+    for file_str, data in struct_analyzer.file_data_map.items():
+        if Path(file_str) in changes:
+            names |= called_names(data)
+    return names
+
+async def run_batch(folder: Path, output: Path, vllm_url: str, use_cache: bool = True, jobs: int = 1,
+                    max_cycles: int = 3, java_dispatch: str = "rta", entry_patterns: List[str] = (),
+                    public_api: bool = False, since: str = None, max_in_flight: int = 16):
+    """
+    Headless analysis for CI: syntax check, structural passes and a semantic
+    audit of every function, with no prompts. Audits are issued concurrently
+    (at most `max_in_flight` at a time) and all findings go to `output`.
+    """
+    from core.scanner import FileScanner
+    from core.source_cache import SourceCache
+    from core.parsed_unit import UnitParser, LANG_BY_EXT
+    from core.parse_cache import ParseCache
+    from core.reachability import EntryPointPolicy
+    from analyzers.structural_analyzer import StructuralAnalyzer
+    from analyzers.llm_bug_detector import LLMBugDetector
+    from analyzers.batch_audit import BatchAuditor
+    from core.incremental import findings_touching
+    from llm.vllm_client import VLLMClient, PRIORITY_BATCH
+    
+    llm_client = VLLMClient(base_url=vllm_url, max_in_flight=max_in_flight)
+    source_cache = SourceCache()
+    unit_parser = UnitParser(source_cache)
+    parse_cache = ParseCache(folder) if use_cache else None
+    entry_policy = EntryPointPolicy(patterns=EntryPointPolicy.DEFAULT_PATTERNS + tuple(entry_patterns),
+                                    public_api=public_api)
+    struct_analyzer = StructuralAnalyzer(source_cache=source_cache, unit_parser=unit_parser,
+                                         parse_cache=parse_cache, jobs=jobs, max_cycles_per_scc=max_cycles,
+                                         include_dirs=[folder, folder / "include"],
+                                         java_dispatch=java_dispatch, entry_policy=entry_policy)
+    
+    started = time.perf_counter()
+    files, valid_files, syntax_errors = [], [], {}
+    # One parse per file: the syntax check keeps the structure for the structural passes
+    for file_path, is_valid, errors in struct_analyzer.check_syntax(FileScanner(folder).iter_files()):
+        files.append(file_path)
+        if is_valid:
+            valid_files.append(file_path)
+        else:
+            syntax_errors[str(file_path)] = [
+                {"line": e.line, "column": e.column, "message": e.message, "parser": e.parser}
+                for e in errors
+            ]
+    valid_files.sort()
+    console.print(f"✓ {len(files)} code files, {len(syntax_errors)} with syntax errors")
+    
+    changes = None
+    if since:
+        from core.incremental import changes_since
+        try:
+            changes = changes_since(folder, since)
+        except RuntimeError as e:
+            console.print(f"[red]Error: --since {since}: {e}[/red]")
+            raise typer.Exit(1)
+        syntax_errors = {f: e for f, e in syntax_errors.items() if Path(f) in changes}
+        console.print(f"✓ {len(changes)} file(s) changed since {since}")
+    
+    results = struct_analyzer.analyze_codebase(valid_files)
+    findings = (findings_touching(changes, results, _names_called_by(changes, struct_analyzer))
+                if changes is not None else results)
+    dead_code = findings["dead_code"]
+    unused_vars = findings["unused_variables"]
+    function_cycles = findings["function_cycles"]
+    circular_deps = findings["circular_dependencies"]
+    console.print(f"✓ Structural passes done ({len(dead_code)} dead functions, "
+                  f"{len(function_cycles)} call cycles, {len(circular_deps)} import cycles)")
+    
+    # Same audit units and context as the interactive semantic phase
+    audit = None
+    if changes is not None:
+        from core.incremental import audit_targets, changed_classes
+        audit = audit_targets(changes, struct_analyzer.file_data_map, source_cache)
+    audit_jobs = []
+    for file_path in valid_files:
+        if audit is not None and file_path not in changes and str(file_path) not in audit:
+            continue
+        parse_result = struct_analyzer.file_data_map.get(str(file_path), {})
+        file_changed = changes is None or file_path in changes
+        audit_jobs.extend(BatchAuditor.plan(
+            file_path, parse_result, source_cache.get(file_path),
+            LANG_BY_EXT.get(file_path.suffix.lower(), "python"), file_level=file_changed,
+            function_lines=audit.get(str(file_path), ()) if audit is not None else None,
+            class_names=changed_classes(changes, file_path, parse_result.get("classes", []), source_cache)
+                        if changes is not None else None,
+        ))
+    
+    console.print(f"→ Auditing {len(audit_jobs)} unit(s), up to {max_in_flight} in flight")
+    step = max(1, len(audit_jobs) // 20)
+    
+    def progress(done: int, total: int):
+        if done % step == 0 or done == total:
+            console.print(f"  [dim]{done}/{total} audited[/dim]")
+    
+    auditor = BatchAuditor(LLMBugDetector(llm_client, priority=PRIORITY_BATCH), max_in_flight=max_in_flight)
+    findings = await auditor.run(audit_jobs, on_result=progress)
+    stats = auditor.stats
+    console.print(f"✓ {stats['with_bugs']} unit(s) with bugs, {stats['failed']} failed audit(s) "
+                  f"[dim]({stats['seconds']:.1f}s, {stats['audits_per_second']:.1f} audits/s, "
+                  f"peak {stats['peak_in_flight']} in flight)[/dim]")
+    
+    report = {
+        "folder": str(folder),
+        "since": since,
+        "files": len(files),
+        "syntax_errors": syntax_errors,
+        "circular_dependencies": circular_deps,
+        "function_cycles": [[sym.qualified_name for sym in cycle] for cycle in function_cycles],
+        "dead_code": [{"name": sym.qualified_name, "file": str(sym.file), "line": sym.line} for sym in dead_code],
+        "unused_variables": unused_vars,
+        "semantic_bugs": findings,
+        "audit_stats": stats,
+        "llm_stats": llm_client.stats(),
+        "pass_timings": results.get("pass_timings", {}),
+        "seconds": round(time.perf_counter() - started, 3),
+    }
+    with open(output, "w", encoding="utf-8") as f:
+        json.dump(report, f, indent=2)
+    console.print(f"[bold green]Report written to {output}[/bold green]")
+    struct_analyzer.close()
+    if parse_cache:
+        parse_cache.close()
 
-async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes: bool, analysis_mode: str = "full"):
+async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes: bool, analysis_mode: str = "full",
+                       use_cache: bool = True, jobs: int = 1, max_cycles: int = 3, java_dispatch: str = "rta",
+                       entry_patterns: List[str] = (), public_api: bool = False, since: str = None):
     from core.scanner import FileScanner
+    from core.source_cache import SourceCache
+    from core.parsed_unit import UnitParser
+    from core.parse_cache import ParseCache
     from analyzers.static_syntax import StaticSyntaxAnalyzer, FileSyntaxError
     from analyzers.syntax_fix_generator import SyntaxFixGenerator
     from analyzers.llm_bug_detector import LLMBugDetector
     from analyzers.fix_generator import FixGenerator
     from analyzers.cross_file_redundancy import CrossFileRedundancyDetector
-    from core.symbol_table import SymbolTableBuilder, Symbol, SymbolType
+    from core.symbol_table import SymbolTableBuilder, Symbol, SymbolType, module_name_for, qualify
     from core.call_graph_builder import CallGraphBuilder
     from analyzers.structural_analyzer import StructuralAnalyzer
     from llm.vllm_client import VLLMClient
@@ -96,16 +398,29 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
     console.print(f"[cyan]→ Connecting to LLM at {vllm_url}[/cyan]")
     llm_client = VLLMClient(base_url=vllm_url)
     
-    # Scan files
-    console.print("\nScanning files...")
-    scanner = FileScanner(folder)
-    files = scanner.scan()
-    console.print(f"✓ Found {len(files)} code files\n")
+    # One read-once source cache shared by every phase of this run
+    source_cache = SourceCache()
+    # ...and one parse per file, shared by the syntax, structural and redundancy phases
+    unit_parser = UnitParser(source_cache)
+    # Persistent parse results keyed by content hash (warm re-runs skip parsing unchanged files)
+    parse_cache = ParseCache(folder) if use_cache else None
     
     # Phase 2: Static Syntax Check
-    syntax_analyzer = StaticSyntaxAnalyzer(llm_client)
+    syntax_analyzer = StaticSyntaxAnalyzer(llm_client, source_cache=source_cache, unit_parser=unit_parser,
+                                           parse_cache=parse_cache)
     syntax_fix_generator = SyntaxFixGenerator(llm_client)
     
+    # The syntax check also extracts the structure of valid files from the same parse
+    from core.reachability import EntryPointPolicy
+    needs_structure = analysis_mode in ['full', 'structural', 'redundancy', 'semantic']
+    entry_policy = EntryPointPolicy(patterns=EntryPointPolicy.DEFAULT_PATTERNS + tuple(entry_patterns),
+                                    public_api=public_api)
+    struct_analyzer = StructuralAnalyzer(source_cache=source_cache, unit_parser=unit_parser,
+                                         parse_cache=parse_cache, jobs=jobs,
+                                         max_cycles_per_scc=max_cycles,
+                                         include_dirs=[folder, folder / "include"],
+                                         java_dispatch=java_dispatch, entry_policy=entry_policy)
+    
     # Results containers
     valid_files = []
     syntax_errors = {}
@@ -123,11 +438,56 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
     cycles = {"imports": [], "calls": []}
     symbol_table = None
     
+    # Scan files
+    console.print("\nScanning files...")
+    scanner = FileScanner(folder)
+    if analysis_mode in ['full', 'syntax']:
+        # The interactive syntax flow shows idx/total progress, so it needs the full list
+        files = scanner.scan()
+    else:
+        # Non-syntax modes: silently classify files while the walk is still running
+        files = []
+        for file_path, is_valid, _ in struct_analyzer.check_syntax(scanner.iter_files(), needs_structure):
+            files.append(file_path)
+            if is_valid:
+                valid_files.append(file_path)
+        files.sort()
+        valid_files.sort()
+    scan_stats = scanner.stats()
+    console.print(
+        f"✓ Found {len(files)} code files "
+        f"[dim]({scan_stats['files_visited']} files visited, "
+        f"{scan_stats['dirs_pruned']} dirs / {scan_stats['files_pruned']} files pruned)[/dim]\n"
+    )
+    
+    # Incremental mode: only files changed since a git ref are checked and audited;
+    # unchanged files still feed the symbol table (from the parse cache when enabled)
+    changes = None
+    if since:
+        from core.incremental import changes_since
+        try:
+            changes = changes_since(folder, since)
+        except RuntimeError as e:
+            console.print(f"[red]Error: --since {since}: {e}[/red]")
+            raise typer.Exit(1)
+        console.print(f"✓ {len(changes)} file(s) changed since {since} "
+                      f"[dim]({len(changes.deleted)} deleted)[/dim]\n")
+        if not use_cache:
+            console.print("[yellow]--since without the parse cache re-parses unchanged files.[/yellow]\n")
+    
     # ── File-by-File Syntax Flow ──────────────────────────────
     if analysis_mode in ['full', 'syntax']:
+        checked = {file_path: (is_valid, errors)
+                   for file_path, is_valid, errors in struct_analyzer.check_syntax(files, needs_structure)}
         for idx, file_path in enumerate(files, 1):
+            if changes is not None and file_path not in changes:
+                # Unchanged since the ref: classify silently, never prompt
+                if checked[file_path][0]:
+                    valid_files.append(file_path)
+                continue
+            
             # 1. DETECT — scan this file
-            is_valid, errors = syntax_analyzer.analyze_file(file_path)
+            is_valid, errors = checked[file_path]
             
             if is_valid:
                 valid_files.append(file_path)
@@ -154,8 +514,8 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
             
             # Interactive fix loop: stay on this file until clean or user skips
             while True:
-                # Re-read and re-parse from disk
-                current_valid, current_errors = syntax_analyzer.analyze_file(file_path)
+                # Re-read from disk; Tree-sitter files are re-parsed incrementally after each edit
+                current_valid, current_errors = syntax_analyzer.recheck_file(file_path)
                 
                 if current_valid:
                     applied_fixes[str(file_path)] = True
@@ -164,9 +524,8 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
                     input("  Press Enter to continue to the next file...")
                     break
                 
-                # Read current code
-                with open(file_path, 'r', encoding='utf-8') as f:
-                    current_code = f.read()
+                # Read current code (cache re-reads once the user's edit changes mtime/size)
+                current_code = source_cache.read_text(file_path)
                 
                 # 4. SUGGEST — LLM generates fix (shown as suggestion)
                 fix_result = await syntax_fix_generator.fix_file_manual_assist(
@@ -193,12 +552,6 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
         if applied_fixes:
             console.print(f"  ✅ {len(applied_fixes)} files fixed")
         console.print(f"{'─'*50}\n")
-    else:
-        # Non-syntax modes: just silently classify files
-        for file_path in files:
-            is_valid, _ = syntax_analyzer.analyze_file(file_path)
-            if is_valid:
-                valid_files.append(file_path)
     
     # Structural Analysis (symbol table + call graph)
     # Phase 2: Structural Analysis
@@ -214,9 +567,6 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
             console.print("\n[bold blue]Phase 4: Structural Analysis[/bold blue]")
         
         console.print("Building symbol table & call graph...")
-        from analyzers.structural_analyzer import StructuralAnalyzer
-        
-        struct_analyzer = StructuralAnalyzer()
         analysis_files = valid_files if valid_files else files
         struct_results = struct_analyzer.analyze_codebase(analysis_files)
         
@@ -227,13 +577,12 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
         # Reconstruct parsed_files for compatibility with Semantic Phase
         for file_path_str, data in struct_results["raw_data"].items():
             fpath = Path(file_path_str)
-            module_name = fpath.stem
+            module_name = module_name_for(fpath, data)
             
             cg_functions = []
             for f in data.get("functions", []):
-                 prefix = f"{f['parent_class']}." if f.get("parent_class") else ""
                  cg_functions.append({
-                     "qualified_name": f"{module_name}.{prefix}{f['name']}",
+                     "qualified_name": qualify(module_name, f["name"], f.get("parent_class"), f.get("param_types")),
                      "calls": f.get("calls", [])
                  })
             
@@ -245,22 +594,38 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
             }
             
         dead_code_symbols = dead_code_data
-        console.print(f"✓ Symbol table built ({len(symbol_table.symbols)} symbols indexed)\n")
+        resolution = struct_analyzer.call_graph.resolution_stats()
+        console.print(
+            f"✓ Symbol table built ({len(symbol_table.symbols)} symbols indexed) "
+            f"[dim](call resolution: {resolution['hits']} cached / {resolution['misses']} resolved, "
+            f"{resolution['hit_rate']:.0%} hit rate)[/dim]"
+        )
+        timings = struct_results.get("pass_timings", {})
+        if timings:
+            console.print("[dim]  passes: " + ", ".join(
+                f"{name} {seconds:.2f}s" for name, seconds in sorted(timings.items(), key=lambda t: -t[1])
+            ) + f" (wall {struct_analyzer.passes.wall_time:.2f}s)[/dim]\n")
     
     # Only show structural analysis results for 'structural' or 'full' modes
     if analysis_mode in ['full', 'structural'] and struct_results:
         unused_vars = struct_results.get("unused_variables", [])
         function_cycles = struct_results.get("function_cycles", [])
         
+        if changes is not None:
+            # Checks ran over the whole tree; report only what the change can affect
+            from core.incremental import findings_touching
+            findings = findings_touching(changes, struct_results, _names_called_by(changes, struct_analyzer))
+            dead_code_symbols = findings["dead_code"]
+            unused_vars = findings["unused_variables"]
+            function_cycles = findings["function_cycles"]
+            circular_deps = findings["circular_dependencies"]
+        
         # Collect all files analyzed
         analysis_files_set = set()
         for s in dead_code_symbols:
             analysis_files_set.add(s.file)
         for v in unused_vars:
-            # Match var file name back to actual Path
-            for fp_str in struct_results.get("raw_data", {}).keys():
-                if Path(fp_str).name == v["file"]:
-                    analysis_files_set.add(Path(fp_str))
+            analysis_files_set.add(Path(v["path"]))
         # Also include files from valid_files/files
         for f in (valid_files if valid_files else files):
             analysis_files_set.add(f)
@@ -271,7 +636,7 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
         console.print("\n[bold yellow]═══ Unused Variables ═══[/bold yellow]\n")
         total_unused = 0
         for fpath in sorted_files:
-            file_vars = [v for v in unused_vars if v["file"] == fpath.name]
+            file_vars = [v for v in unused_vars if v["path"] == str(fpath)]
             if not file_vars:
                 continue
             total_unused += len(file_vars)
@@ -343,12 +708,17 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
         
         # Ensure helper objects are ready
         fix_gen = FixGenerator(llm_client)
-        if 'struct_analyzer' not in locals():
-            from analyzers.structural_analyzer import StructuralAnalyzer
-            struct_analyzer = StructuralAnalyzer()
 
         # Iterate through files interactively
         analysis_queue = valid_files if valid_files else files
+        audit = None
+        if changes is not None:
+            from core.incremental import audit_targets, changed_classes
+            # Changed functions plus callers whose dependency hints name one of them
+            audit = audit_targets(changes, struct_analyzer.file_data_map, source_cache)
+            analysis_queue = [f for f in analysis_queue if f in changes or str(f) in audit]
+            console.print(f"[dim]--since {since}: auditing {sum(map(len, audit.values()))} function(s) "
+                          f"in {len(analysis_queue)} file(s)[/dim]")
         
         for file_idx, file_path in enumerate(analysis_queue, 1):
             if file_path.name in ['.gitignore', 'requirements.txt']: continue
@@ -356,40 +726,28 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
             console.print(f"\n[bold cyan]Analyzing File {file_idx}/{len(analysis_queue)}: {file_path.name}[/bold cyan]")
             
             try:
-                with open(file_path, 'r', encoding='utf-8') as f:
-                    code = f.read()
+                source = source_cache.get(file_path)
+                code = source.text
             except Exception as e:
                 console.print(f"[red]Error reading {file_path.name}: {e}[/red]")
                 continue
 
-            # Parse file once per session
-            parse_result = struct_analyzer.parser.parse(code, file_path)
+            # Reuse the structural phase's output; otherwise extract from the shared parse
+            parse_result = struct_analyzer.file_data_map.get(str(file_path))
+            if parse_result is None:
+                parse_result = struct_analyzer.parser.parse_unit(unit_parser.parse_file(file_path))
             functions = parse_result.get("functions", [])
             
             # Context extraction
-            imports_str = ""
-            global_vars_str = ""
-            parsed_imports = parse_result.get("imports", [])
-            if parsed_imports:
-                imp_lines = []
-                for imp in parsed_imports:
-                    if isinstance(imp, dict):
-                        mod = imp.get("module", "")
-                        nms = imp.get("names", [])
-                        if nms: imp_lines.append(f"from {mod} import {', '.join(nms)}")
-                        elif mod: imp_lines.append(mod)
-                    else: imp_lines.append(str(imp))
-                imports_str = "\n".join(imp_lines)
-            
-            parsed_globals = parse_result.get("global_vars", [])
-            if parsed_globals:
-                global_vars_str = "\n".join(parsed_globals)
+            imports_str, global_vars_str = LLMBugDetector.file_context(parse_result)
             
             language = lang_map.get(file_path.suffix, 'python')
             skip_file = False
+            # File-level audits only for changed files in --since mode
+            file_changed = changes is None or file_path in changes
 
             # 1. Globals Analysis
-            if global_vars_str:
+            if global_vars_str and file_changed:
                 global_bugs, global_fix = await bug_detector.analyze_symbol(
                     "Global Variables", global_vars_str, language, file_path,
                     class_context="", dependency_hints="", 
@@ -425,7 +783,7 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
             if parse_result.get("calls") and len(parse_result.get("calls", [])) > 0:
                 significant_top_level = True
             
-            if significant_top_level:
+            if significant_top_level and file_changed:
                 console.print(f"  [dim]Auditing: Global/Top-level Code...[/dim]")
                 file_bugs, file_corrected_code = await bug_detector.analyze_code(file_path, code, language)
                 filter_file_bugs = [b for b in file_bugs if b.severity.lower() in ['critical', 'high', 'medium', 'low']]
@@ -455,32 +813,18 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
 
             # 2. Sequential Function Analysis
             for target_func in functions:
+                if audit is not None and target_func["line"] not in audit.get(str(file_path), ()):
+                    continue
                 sym_name = target_func['name']
+                target_body = source.slice(*target_func["span"])
                 
-                # Build Context (Identical logic as before)
-                class_ctx = ""
-                if target_func.get("parent_class"):
-                    cls_name = target_func["parent_class"]
-                    cls_data = next((c for c in parse_result.get("classes", []) if c["name"] == cls_name), None)
-                    if cls_data:
-                        skel = [f"class {cls_name} {{"]
-                        if cls_data.get("attributes"):
-                            for a in cls_data["attributes"]: skel.append(f"    {a};")
-                        skel.append(f"    // ... other methods ...")
-                        skel.append(f"    // === TARGET: {sym_name} ===")
-                        for l in target_func["body_code"].splitlines():
-                            skel.append(f"    {l}")
-                        skel.append("}")
-                        class_ctx = "\n".join(skel)
-
-                dep_hints = ""
-                if target_func.get("calls"):
-                    dep_hints += "Functions this calls: " + ", ".join(target_func["calls"]) + "\n"
+                # Build Context (class skeleton + dependency hints)
+                class_ctx, dep_hints = LLMBugDetector.symbol_context(parse_result, target_func, target_body)
 
                 # LLM Analysis
                 console.print(f"  [dim]Auditing: {sym_name}...[/dim]")
                 bugs, corrected_code = await bug_detector.analyze_symbol(
-                    sym_name, target_func["body_code"], language, file_path,
+                    sym_name, target_body, language, file_path,
                     class_context=class_ctx, dependency_hints=dep_hints,
                     global_vars=global_vars_str, imports_list=imports_str
                 )
@@ -517,10 +861,15 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
 
             # 3. Method-less Class Analysis (Data classes, etc.)
             parsed_classes = parse_result.get("classes", [])
+            touched_classes = None
+            if changes is not None:
+                touched_classes = changed_classes(changes, file_path, parsed_classes, source_cache)
             for cls in parsed_classes:
                 # Only analyze if it has NO methods (methods are handled in the function loop)
                 if cls["methods"]:
                     continue
+                if touched_classes is not None and cls["name"] not in touched_classes:
+                    continue
                 
                 cls_name = cls["name"]
                 console.print(f"  [dim]Auditing Class: {cls_name}...[/dim]")
@@ -535,7 +884,7 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
                 
                 class_bugs, corrected_code = await bug_detector.analyze_symbol(
                     cls_name, 
-                    cls.get("body_code", ""), 
+                    source.slice(*cls["span"]), 
                     language, 
                     file_path,
                     class_context="", # It IS the class
@@ -574,7 +923,7 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
     if analysis_mode in ['full', 'redundancy']:
         console.print("\n[bold blue]Phase 5: Cross-file Redundancy Detection[/bold blue]")
         if symbol_table:
-            redundancy_detector = CrossFileRedundancyDetector(symbol_table, llm_client)
+            redundancy_detector = CrossFileRedundancyDetector(symbol_table, llm_client, source_cache=source_cache, unit_parser=unit_parser)
             duplicates = await redundancy_detector.detect_duplicates(console=console)
             
             console.print(f"\n[bold yellow]═══ Redundant / Duplicate Functions ═══[/bold yellow]\n")
@@ -599,9 +948,64 @@ async def run_analysis(folder: Path, output: Path, vllm_url: str, generate_fixes
         else:
             console.print("[red]  ✗ Redundancy detection requires structural analysis first. Skipping.[/red]\n")
     
+    struct_analyzer.close()
+    if parse_cache:
+        parse_cache.close()
+    
 
 
-
+@app.command()
+def serve(
+    folder: Path = typer.Argument(..., help="Folder to keep analyzed"),
+    port: int = typer.Option(0, "--port", help="HTTP port for JSON-RPC (0 = line-delimited JSON-RPC on stdin/stdout)"),
+    host: str = typer.Option("127.0.0.1", "--host", help="HTTP bind address"),
+    vllm_url: str = typer.Option("http://127.0.0.1:8000/v1", "--vllm-url", help="LLM server URL (OpenAI-compatible)"),
+    use_cache: bool = typer.Option(True, "--cache/--no-cache", help="Reuse parse results from .analyzer_cache/ for unchanged files"),
+    jobs: int = typer.Option(1, "--jobs", "-j", help="Worker processes for structural parsing (0 = one per CPU core)"),
+    java_dispatch: str = typer.Option("rta", "--java-dispatch", help="Java virtual-call resolution: rta, cha or name"),
+    entry: List[str] = typer.Option(None, "--entry", help="Extra dead-code entry points (name or qualified-name pattern, repeatable)"),
+    public_api: bool = typer.Option(False, "--public-api", help="Treat public functions/methods as dead-code entry points (libraries)"),
+    poll_interval: float = typer.Option(0.5, "--poll-interval", help="Seconds between checks of the folder for changed files"),
+):
+    """
+    Serve the analysis of a folder over JSON-RPC (parse_file, find_symbol,
+    call_chain, dead_code, duplicates, audit_symbol) for editors and CI.
+    """
+    from core.reachability import EntryPointPolicy
+    from llm.vllm_client import VLLMClient
+    from analyzers.analysis_server import AnalysisService, serve_stdio, serve_http
+    
+    if not folder.exists():
+        console.print(f"[red]Error: Folder {folder} does not exist[/red]")
+        raise typer.Exit(1)
+    if java_dispatch not in ("rta", "cha", "name"):
+        console.print(f"[red]Error: --java-dispatch must be one of rta, cha, name[/red]")
+        raise typer.Exit(1)
+    
+    # stdout carries the protocol in stdio mode: status and analyzer output go to stderr
+    # until the server stops
+    status = Console(stderr=True)
+    protocol_out = sys.stdout
+    entry_policy = EntryPointPolicy(patterns=EntryPointPolicy.DEFAULT_PATTERNS + tuple(entry or []),
+                                    public_api=public_api)
+    service = AnalysisService(folder, llm_client=VLLMClient(base_url=vllm_url), use_cache=use_cache,
+                              jobs=jobs or (os.cpu_count() or 1), java_dispatch=java_dispatch,
+                              entry_policy=entry_policy, poll_interval=poll_interval)
+    with contextlib.redirect_stdout(sys.stderr) if not port else contextlib.nullcontext():
+        started = time.perf_counter()
+        service.load()
+        status.print(f"[bold green]Serving {folder}[/bold green] [dim](initial analysis "
+                     f"{time.perf_counter() - started:.2f}s)[/dim]")
+        try:
+            if port:
+                status.print(f"[dim]JSON-RPC on http://{host}:{port}/ (Ctrl+C to stop)[/dim]")
+                serve_http(service, host, port)
+            else:
+                serve_stdio(service, protocol_out)
+        except KeyboardInterrupt:
+            status.print("[dim]Server stopped.[/dim]")
+        finally:
+            service.close()
 
 if __name__ == "__main__":
     app()
@@ -0,0 +1,37 @@
+// Two classes in one file with same-named methods.
+// Each describe() calls its own class's area(): neither area() is dead,
+// and Square.describe() must not be linked to Circle.area().
+public class SameNameMethods {
+    public static void main(String[] args) {
+        new Circle(1.0).describe();
+        new Square(2.0).describe();
+    }
+}
+
+class Circle {
+    private final double r;
+
+    Circle(double r) { this.r = r; }
+
+    double area() {
+        return Math.PI * r * r;
+    }
+
+    void describe() {
+        System.out.println("circle " + area());
+    }
+}
+
+class Square {
+    private final double side;
+
+    Square(double side) { this.side = side; }
+
+    double area() {
+        return side * side;
+    }
+
+    void describe() {
+        System.out.println("square " + area());
+    }
+}